@@ -29,7 +29,13 @@ goto buildJar
 :buildOpenMDAOPlugin
 
 echo Compiling for OpenMDAO only jar
-"%JAVAC_EXE%" -d %CLASSDIR% src/main/java/openvsp3plugin/DesignVariable.java src/main/java/openvsp3plugin/DesignVariableGroup.java src/main/java/openvsp3plugin/DesignVariableTableCell.java src/main/java/openvsp3plugin/JavaFXUI.java src/main/java/openvsp3plugin/Logger.java src/main/java/openvsp3plugin/OpenMDAO.java src/main/java/openvsp3plugin/OpenVSP3File.java src/main/java/openvsp3plugin/OpenVSP3Plugin.java src/main/java/openvsp3plugin/PluginState.java src/main/java/openvsp3plugin/SwingDialog.java src/main/java/openvsp3plugin/XPathUtil.java
+:: every source file except the ModelCenter classes
+if exist sources.txt del sources.txt
+for %%f in (src\main\java\openvsp3plugin\*.java) do (
+	echo %%~nf| findstr /b /c:"ModelCenter" >nul || echo src/main/java/openvsp3plugin/%%~nxf>> sources.txt
+)
+"%JAVAC_EXE%" -d %CLASSDIR% @sources.txt
+del sources.txt
 
 :buildJar
 
@@ -0,0 +1,354 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static openvsp3plugin.OpenVSP3Plugin.CFDFILE;
+import static openvsp3plugin.OpenVSP3Plugin.COMPGEOM;
+import static openvsp3plugin.OpenVSP3Plugin.COMPGEOM2;
+import static openvsp3plugin.OpenVSP3Plugin.DEGENGEOM;
+import static openvsp3plugin.OpenVSP3Plugin.FILE;
+import static openvsp3plugin.OpenVSP3Plugin.MASSPROP;
+import static openvsp3plugin.OpenVSP3Plugin.MESH;
+
+/**
+ * This class is the work a PluginState asks OpenVSP for, built once from the design variable list:
+ * the analyses in script order with the files they write and the outputs they feed,
+ * and the design variable lists the read phases need, including the inputs in des file order.
+ * The vsp3 file is only written when something reads it (XPath outputs, the epsilon check or a vsp3 File output).
+ */
+class AnalysisPlan {
+
+	enum Type {EXPORT, DEGENGEOM, COMPGEOM, MASSPROP, CFDMESH}
+
+	/**
+	 * One ExportFile or Compute call in the script.
+	 */
+	static class Analysis {
+
+		private final Type type;
+		private final String name;
+		private final String format;
+		private final List<String> fileNames;
+		private final List<DesignVariable> outputs = new ArrayList<>();
+
+		private Analysis(Type type, String name, String format, String... fileNames) {
+			this.type = type;
+			this.name = name;
+			this.format = format;
+			this.fileNames = Arrays.asList(fileNames);
+		}
+
+		Type getType() {
+			return type;
+		}
+
+		/**
+		 * Returns the name used by the analysis cache and OpenVSP3Plugin.skip.
+		 */
+		String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the export or CFD file extension, null for the other analyses.
+		 */
+		String getFormat() {
+			return format;
+		}
+
+		List<String> getFileNames() {
+			return fileNames;
+		}
+
+		List<DesignVariable> getOutputs() {
+			return outputs;
+		}
+
+		/**
+		 * Exports are cheap and always run, the Compute analyses can be cached.
+		 */
+		boolean isCacheable() {
+			return type != Type.EXPORT;
+		}
+	}
+
+	static final String VSP3FILE = "OpenVSP3Plugin.vsp3";
+	private final PluginState pluginState;
+	private final boolean sort;
+	private final List<DesignVariable> inputs = new ArrayList<>();
+	private final List<DesignVariable> desInputs;
+	private final List<DesignVariable> outputs = new ArrayList<>();
+	private final Map<String, Integer> outputIndexes = new HashMap<>();
+	private final List<DesignVariable> fileOutputs = new ArrayList<>();
+	private final List<DesignVariable> cfdFileOutputs = new ArrayList<>();
+	private final List<DesignVariable> compGeomOutputs = new ArrayList<>();
+	private final List<DesignVariable> tagCompGeomOutputs = new ArrayList<>();
+	private final List<DesignVariable> massPropOutputs = new ArrayList<>();
+	private final List<DesignVariable> degenGeomOutputs = new ArrayList<>();
+	private final List<DesignVariable> meshOutputs = new ArrayList<>();
+	private final List<DesignVariable> xpathOutputs = new ArrayList<>();
+	private final List<DesignVariable> xpathInputs = new ArrayList<>();
+	private final List<Analysis> analyses = new ArrayList<>();
+	private final boolean needsVSP3;
+	private final CompGeomReader compGeomReader;
+	private final MassPropReader massPropReader;
+	private final DegenGeomReader degenGeomReader;
+	private final MeshReader meshReader;
+
+	/**
+	 * sort is the des file order, see PluginState.getDesInputs().
+	 */
+	AnalysisPlan(PluginState pluginState, boolean sort) {
+		this.pluginState = pluginState;
+		this.sort = sort;
+		// sorting adds listeners to the design variable list so it is only done here, not by each batch
+		desInputs = pluginState.getDesInputs(sort);
+		Analysis compGeom = null;
+		Analysis massProp = null;
+		Analysis degenGeom = null;
+		Map<String, Analysis> exports = new HashMap<>();
+		Map<String, Analysis> cfdMeshes = new LinkedHashMap<>();
+		boolean vsp3Output = false;
+		for (DesignVariable dv : pluginState.getDesignVariables()) {
+			if (!dv.isOutput()) {
+				inputs.add(dv);
+				if (!dv.getXPath().isEmpty()) xpathInputs.add(dv);
+			} else {
+				outputIndexes.put(dv.getFullName(), outputs.size());
+				outputs.add(dv);
+				if (!dv.getXPath().isEmpty()) xpathOutputs.add(dv);
+			}
+			String id = dv.getId();
+			String name = dv.getName();
+			if (id.equals(FILE)) {
+				fileOutputs.add(dv);
+				if (name.equals("vsp3")) {
+					vsp3Output = true;
+				} else if (name.equals("DegenGeom")) {
+					if (degenGeom == null) {
+						degenGeom = new Analysis(Type.DEGENGEOM, DEGENGEOM, null, DegenGeomReader.FILENAME);
+						analyses.add(degenGeom);
+					}
+					degenGeom.outputs.add(dv);
+				} else if (!name.equals("des") && !name.equals("inc")) { // inc is extra file created with pov
+					getExport(exports, name).outputs.add(dv);
+				}
+			} else if (id.equals(CFDFILE)) {
+				cfdFileOutputs.add(dv);
+				getCFDMesh(cfdMeshes, name).outputs.add(dv);
+			} else if (id.equals(MESH)) {
+				// the summaries need the export or CFD mesh file even when the file is not an output
+				meshOutputs.add(dv);
+				String format = MeshReader.getFormat(dv.getGroup());
+				Analysis analysis = MeshReader.isCFD(dv.getGroup()) ? getCFDMesh(cfdMeshes, format) : getExport(exports, format);
+				analysis.outputs.add(dv);
+			} else if (id.equals(COMPGEOM) || id.equals(COMPGEOM2)) {
+				// both tables come from one ComputeCompGeom call
+				if (id.equals(COMPGEOM)) compGeomOutputs.add(dv);
+				else tagCompGeomOutputs.add(dv);
+				if (compGeom == null) compGeom = new Analysis(Type.COMPGEOM, COMPGEOM, null, "OpenVSP3PluginCompGeom.csv", "OpenVSP3PluginCompGeom.txt");
+				compGeom.outputs.add(dv);
+			} else if (id.equals(DEGENGEOM)) {
+				// the summaries and the DegenGeom File output share one ComputeDegenGeom call
+				degenGeomOutputs.add(dv);
+				if (degenGeom == null) {
+					degenGeom = new Analysis(Type.DEGENGEOM, DEGENGEOM, null, DegenGeomReader.FILENAME);
+					analyses.add(degenGeom);
+				}
+				degenGeom.outputs.add(dv);
+			} else if (id.equals(MASSPROP)) {
+				massPropOutputs.add(dv);
+				if (massProp == null) massProp = new Analysis(Type.MASSPROP, MASSPROP, null, "OpenVSP3PluginMassProp.txt");
+				massProp.outputs.add(dv);
+			}
+		}
+		// the script order is File exports, CompGeom, MassProperties then the CFD meshes
+		if (compGeom != null) analyses.add(compGeom);
+		if (massProp != null) analyses.add(massProp);
+		analyses.addAll(cfdMeshes.values());
+		compGeomReader = new CompGeomReader(compGeomOutputs, tagCompGeomOutputs);
+		massPropReader = new MassPropReader(massPropOutputs);
+		degenGeomReader = new DegenGeomReader(degenGeomOutputs);
+		meshReader = new MeshReader(meshOutputs);
+		needsVSP3 = vsp3Output || !xpathOutputs.isEmpty() || ((pluginState.getEpsilon() != null) && !xpathInputs.isEmpty());
+	}
+
+	/**
+	 * Returns the export of format, it is added to the analyses the first time.
+	 */
+	private Analysis getExport(Map<String, Analysis> exports, String format) {
+		Analysis analysis = exports.get(format);
+		if (analysis == null) {
+			analysis = format.equals("pov")
+					? new Analysis(Type.EXPORT, "Export.pov", format, "OpenVSP3Plugin.pov", "OpenVSP3Plugin.inc")
+					: new Analysis(Type.EXPORT, "Export." + format, format, "OpenVSP3Plugin." + format);
+			exports.put(format, analysis);
+			analyses.add(analysis);
+		}
+		return analysis;
+	}
+
+	/**
+	 * Returns the CFD mesh of format, the CFD meshes are added to the analyses last.
+	 */
+	private static Analysis getCFDMesh(Map<String, Analysis> cfdMeshes, String format) {
+		Analysis analysis = cfdMeshes.get(format);
+		if (analysis == null) {
+			analysis = new Analysis(Type.CFDMESH, CFDFILE + "." + format, format, "OpenVSP3PluginCFD." + format);
+			cfdMeshes.put(format, analysis);
+		}
+		return analysis;
+	}
+
+	PluginState getPluginState() {
+		return pluginState;
+	}
+
+	boolean isSorted() {
+		return sort;
+	}
+
+	/**
+	 * Returns the inputs in design variable list order.
+	 */
+	List<DesignVariable> getInputs() {
+		return Collections.unmodifiableList(inputs);
+	}
+
+	/**
+	 * Returns the inputs in the order of the des file lines.
+	 */
+	List<DesignVariable> getDesInputs() {
+		return Collections.unmodifiableList(desInputs);
+	}
+
+	List<DesignVariable> getOutputs() {
+		return Collections.unmodifiableList(outputs);
+	}
+
+	/**
+	 * Returns the position of the output in getOutputs().
+	 */
+	int getOutputIndex(DesignVariable dv) {
+		return outputIndexes.get(dv.getFullName());
+	}
+
+	List<DesignVariable> getFileOutputs() {
+		return Collections.unmodifiableList(fileOutputs);
+	}
+
+	List<DesignVariable> getCFDFileOutputs() {
+		return Collections.unmodifiableList(cfdFileOutputs);
+	}
+
+	List<DesignVariable> getCompGeomOutputs() {
+		return Collections.unmodifiableList(compGeomOutputs);
+	}
+
+	List<DesignVariable> getTagCompGeomOutputs() {
+		return Collections.unmodifiableList(tagCompGeomOutputs);
+	}
+
+	List<DesignVariable> getMassPropOutputs() {
+		return Collections.unmodifiableList(massPropOutputs);
+	}
+
+	/**
+	 * Returns the reader for the CompGeom and TagCompGeom outputs, its slots are found once for the PluginState.
+	 */
+	CompGeomReader getCompGeomReader() {
+		return compGeomReader;
+	}
+
+	List<DesignVariable> getDegenGeomOutputs() {
+		return Collections.unmodifiableList(degenGeomOutputs);
+	}
+
+	List<DesignVariable> getMeshOutputs() {
+		return Collections.unmodifiableList(meshOutputs);
+	}
+
+	/**
+	 * Returns the reader for the MassProp outputs.
+	 */
+	MassPropReader getMassPropReader() {
+		return massPropReader;
+	}
+
+	/**
+	 * Returns the reader for the DegenGeom summary outputs.
+	 */
+	DegenGeomReader getDegenGeomReader() {
+		return degenGeomReader;
+	}
+
+	/**
+	 * Returns the reader for the Mesh summary outputs of the exported and CFD mesh files.
+	 */
+	MeshReader getMeshReader() {
+		return meshReader;
+	}
+
+	/**
+	 * Returns the outputs read from the vsp3 file by XPath.
+	 */
+	List<DesignVariable> getXPathOutputs() {
+		return Collections.unmodifiableList(xpathOutputs);
+	}
+
+	/**
+	 * Returns the inputs the epsilon check reads back from the vsp3 file.
+	 */
+	List<DesignVariable> getXPathInputs() {
+		return Collections.unmodifiableList(xpathInputs);
+	}
+
+	/**
+	 * Returns the analyses in script order.
+	 */
+	List<Analysis> getAnalyses() {
+		return Collections.unmodifiableList(analyses);
+	}
+
+	boolean needsVSP3() {
+		return needsVSP3;
+	}
+
+	boolean hasFileOutputs() {
+		return !fileOutputs.isEmpty() || !cfdFileOutputs.isEmpty();
+	}
+
+	/**
+	 * Returns the names of the files OpenVSP writes for the plan, the vsp3 file is first if it is written.
+	 */
+	List<String> getOutputFileNames() {
+		Set<String> names = new LinkedHashSet<>();
+		if (needsVSP3) names.add(VSP3FILE);
+		for (Analysis analysis : analyses) names.addAll(analysis.getFileNames());
+		return new ArrayList<>(names);
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * This class splits the lines of the OpenVSP text outputs into columns without regular expressions.
+ * A column ends at a run of whitespace or at a comma and the whitespace after it. Whitespace before a comma
+ * is a separator of its own so the comma then makes an empty column, and trailing empty columns are dropped.
+ * The line is read into a char buffer that is reused for every line and the columns are offsets into it,
+ * numbers are parsed from the buffer so no String is made for a column unless it is asked for.
+ */
+class CSVTokenizer {
+
+	static final double[] POWERS = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	private final Reader reader;
+	private final char[] input = new char[8192];
+	private int inputPosition = 0;
+	private int inputLength = 0;
+	private boolean skipLineFeed = false;
+	private char[] line = new char[256];
+	private int lineLength = 0;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int count = 0;
+
+	CSVTokenizer(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Reads the next line and splits it, returns false at the end of the input.
+	 */
+	boolean next() throws IOException {
+		if (!readLine()) return false;
+		split();
+		return true;
+	}
+
+	/**
+	 * Reads the next line without splitting it, returns false at the end of the input.
+	 */
+	boolean skip() throws IOException {
+		count = 0;
+		return readLine();
+	}
+
+	/**
+	 * Returns the number of columns in the line.
+	 */
+	int count() {
+		return count;
+	}
+
+	boolean startsWith(String prefix) {
+		if (prefix.length() > lineLength) return false;
+		for (int i = 0; i < prefix.length(); i++) {
+			if (line[i] != prefix.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	String getLine() {
+		return new String(line, 0, lineLength);
+	}
+
+	String getString(int column) {
+		return new String(line, starts[column], ends[column] - starts[column]);
+	}
+
+	boolean equals(int column, String text) {
+		int length = ends[column] - starts[column];
+		if (length != text.length()) return false;
+		for (int i = 0; i < length; i++) {
+			if (line[starts[column] + i] != text.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the column starts with an upper case letter, like the section names in the DegenGeom file.
+	 */
+	boolean isUpperCase(int column) {
+		return (starts[column] != ends[column]) && (line[starts[column]] >= 'A') && (line[starts[column]] <= 'Z');
+	}
+
+	void appendTo(StringBuilder sb, int column) {
+		sb.append(line, starts[column], ends[column] - starts[column]);
+	}
+
+	/**
+	 * Returns the column as a double, numbers that can't be converted exactly here are left to Double.parseDouble.
+	 */
+	double getDouble(int column) {
+		int start = starts[column];
+		int end = ends[column];
+		int i = start;
+		boolean negative = false;
+		if ((i < end) && ((line[i] == '-') || (line[i] == '+'))) negative = line[i++] == '-';
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigits = false;
+		for (; (i < end) && (line[i] >= '0') && (line[i] <= '9'); i++) {
+			anyDigits = true;
+			if ((mantissa != 0) || (line[i] != '0')) digits++;
+			mantissa = 10 * mantissa + (line[i] - '0');
+			if (digits > 15) return parseDouble(start, end);
+		}
+		if ((i < end) && (line[i] == '.')) {
+			for (i++; (i < end) && (line[i] >= '0') && (line[i] <= '9'); i++) {
+				anyDigits = true;
+				if ((mantissa != 0) || (line[i] != '0')) digits++;
+				mantissa = 10 * mantissa + (line[i] - '0');
+				exponent--;
+				if (digits > 15) return parseDouble(start, end);
+			}
+		}
+		if (!anyDigits) return parseDouble(start, end);
+		if ((i < end) && ((line[i] == 'e') || (line[i] == 'E'))) {
+			i++;
+			boolean negativeExponent = false;
+			if ((i < end) && ((line[i] == '-') || (line[i] == '+'))) negativeExponent = line[i++] == '-';
+			if ((i == end) || (end - i > 4)) return parseDouble(start, end);
+			int value = 0;
+			for (; i < end; i++) {
+				if ((line[i] < '0') || (line[i] > '9')) return parseDouble(start, end);
+				value = 10 * value + (line[i] - '0');
+			}
+			exponent += negativeExponent ? -value : value;
+		}
+		if (i != end) return parseDouble(start, end);
+		// a mantissa of 15 digits or less and a power of ten up to 1e22 are exact doubles so one operation rounds correctly
+		double value = mantissa;
+		if (exponent < 0) {
+			if (exponent < -22) return parseDouble(start, end);
+			value /= POWERS[-exponent];
+		} else if (exponent > 0) {
+			if (exponent > 22) return parseDouble(start, end);
+			value *= POWERS[exponent];
+		}
+		return negative ? -value : value;
+	}
+
+	private double parseDouble(int start, int end) {
+		return Double.parseDouble(new String(line, start, end - start));
+	}
+
+	private boolean readLine() throws IOException {
+		lineLength = 0;
+		while (true) {
+			if (inputPosition == inputLength) {
+				inputLength = reader.read(input, 0, input.length);
+				inputPosition = 0;
+				if (inputLength <= 0) {
+					inputLength = 0;
+					return lineLength > 0;
+				}
+			}
+			if (skipLineFeed) {
+				skipLineFeed = false;
+				if (input[inputPosition] == '\n') inputPosition++;
+				continue;
+			}
+			char c = input[inputPosition++];
+			if ((c == '\n') || (c == '\r')) {
+				skipLineFeed = c == '\r';
+				return true;
+			}
+			if (lineLength == line.length) {
+				char[] larger = new char[2 * line.length];
+				System.arraycopy(line, 0, larger, 0, lineLength);
+				line = larger;
+			}
+			line[lineLength++] = c;
+		}
+	}
+
+	private void split() {
+		count = 0;
+		int start = 0;
+		int i = 0;
+		while (i < lineLength) {
+			char c = line[i];
+			if (isWhitespace(c)) {
+				int end = i;
+				while ((i < lineLength) && isWhitespace(line[i])) i++;
+				add(start, end);
+				start = i;
+			} else if (c == ',') {
+				int end = i++;
+				while ((i < lineLength) && isWhitespace(line[i])) i++;
+				add(start, end);
+				start = i;
+			} else {
+				i++;
+			}
+		}
+		add(start, lineLength);
+		// like String.split the trailing empty columns are removed
+		while ((count > 0) && (starts[count - 1] == ends[count - 1])) count--;
+	}
+
+	private void add(int start, int end) {
+		if (count == starts.length) {
+			int[] largerStarts = new int[2 * count];
+			int[] largerEnds = new int[2 * count];
+			System.arraycopy(starts, 0, largerStarts, 0, count);
+			System.arraycopy(ends, 0, largerEnds, 0, count);
+			starts = largerStarts;
+			ends = largerEnds;
+		}
+		starts[count] = start;
+		ends[count] = end;
+		count++;
+	}
+
+	/**
+	 * The \s characters of a regular expression.
+	 */
+	private static boolean isWhitespace(char c) {
+		return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\u000B') || (c == '\f') || (c == '\r');
+	}
+}
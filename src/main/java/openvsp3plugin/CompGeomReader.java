@@ -0,0 +1,216 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static openvsp3plugin.OpenVSP3Plugin.COMPGEOM;
+import static openvsp3plugin.OpenVSP3Plugin.COMPGEOM2;
+import static openvsp3plugin.OpenVSP3Plugin.COMPGEOMVALUES;
+import static openvsp3plugin.OpenVSP3Plugin.COMPGEOMVALUES2;
+
+/**
+ * This class reads OpenVSP3PluginCompGeom.csv for the CompGeom and TagCompGeom outputs of an AnalysisPlan.
+ * The slot of each output is found once from the design variable names, a read tokenizes the file
+ * and parses only the values that have a slot straight into a double array, the missing values are NaN.
+ * readMaps() gives every value by full name for the dialog, which shows the whole table.
+ */
+class CompGeomReader {
+
+	static final String FILENAME = "OpenVSP3PluginCompGeom.csv";
+	private final List<DesignVariable> outputs = new ArrayList<>();
+	// first table rows by name without the count, the slots of each occurrence
+	private final Map<String, Integer> rowIndexes = new HashMap<>();
+	private final List<Map<Integer, int[]>> rowSlots = new ArrayList<>();
+	// tag table rows by group
+	private final Map<String, int[]> tagSlots = new HashMap<>();
+
+	CompGeomReader(List<DesignVariable> compGeomOutputs, List<DesignVariable> tagCompGeomOutputs) {
+		for (DesignVariable dv : compGeomOutputs) addSlot(dv);
+		for (DesignVariable dv : tagCompGeomOutputs) addSlot(dv);
+	}
+
+	private void addSlot(DesignVariable dv) {
+		int slot = outputs.size();
+		outputs.add(dv);
+		if (dv.getContainer().equals(COMPGEOM2)) {
+			int column = Arrays.asList(COMPGEOMVALUES2).indexOf(dv.getName());
+			if (column >= 0) getSlots(tagSlots, dv.getGroup(), 2)[column] = slot;
+			return;
+		}
+		int column = Arrays.asList(COMPGEOMVALUES).indexOf(dv.getName());
+		if (!dv.getContainer().equals(COMPGEOM) || (column < 0)) return;
+		// the group is the row name with the count that keeps it unique, except for Totals,
+		// every way of splitting the count from the name is kept since the names can end in digits
+		String group = dv.getGroup();
+		if (group.equals("Totals")) {
+			getSlots(getRow(group), -1, 4)[column] = slot;
+			return;
+		}
+		for (int i = group.length() - 1; (i > 0) && Character.isDigit(group.charAt(i)); i--) {
+			if ((group.charAt(i) == '0') && (i != group.length() - 1)) continue;
+			Integer occurrence;
+			try {
+				occurrence = Integer.valueOf(group.substring(i));
+			} catch (NumberFormatException ex) {
+				continue;
+			}
+			getSlots(getRow(group.substring(0, i)), occurrence, 4)[column] = slot;
+		}
+	}
+
+	private Map<Integer, int[]> getRow(String name) {
+		Integer index = rowIndexes.get(name);
+		if (index == null) {
+			index = rowSlots.size();
+			rowIndexes.put(name, index);
+			rowSlots.add(new HashMap<>());
+		}
+		return rowSlots.get(index);
+	}
+
+	private static <K> int[] getSlots(Map<K, int[]> map, K key, int size) {
+		int[] slots = map.get(key);
+		if (slots == null) {
+			slots = new int[size];
+			Arrays.fill(slots, -1);
+			map.put(key, slots);
+		}
+		return slots;
+	}
+
+	/**
+	 * Returns the outputs in slot order, CompGeom then TagCompGeom.
+	 */
+	List<DesignVariable> getOutputs() {
+		return outputs;
+	}
+
+	boolean isEmpty() {
+		return outputs.isEmpty();
+	}
+
+	/**
+	 * Reads the values for the outputs from directory, the array is in getOutputs() order.
+	 */
+	double[] read(File directory) throws Exception {
+		double[] values = new double[outputs.size()];
+		Arrays.fill(values, Double.NaN);
+		if (outputs.isEmpty()) return values;
+		int[] occurrences = new int[rowSlots.size()];
+		StringBuilder group = new StringBuilder();
+		try (Reader reader = new FileReader(new File(directory, FILENAME))) {
+			CSVTokenizer tokenizer = new CSVTokenizer(reader);
+			boolean firstTable = true;
+			tokenizer.skip(); // read headers
+			while (tokenizer.next()) {
+				int count = tokenizer.count();
+				if (count < 3) {
+					firstTable = false;
+					tokenizer.skip(); // read 2nd headers after blank line
+				} else if (firstTable) {
+					if (count != 5) {
+						throw new Exception(String.format("CompGeom table has %d columns not 5/n%s", count, tokenizer.getLine()));
+					}
+					int[] slots;
+					String name = tokenizer.getString(0);
+					Integer index = rowIndexes.get(name);
+					if (index == null) continue;
+					if (name.equals("Totals")) slots = rowSlots.get(index).get(-1);
+					else slots = rowSlots.get(index).get(occurrences[index]++);
+					if (slots != null) {
+						for (int i = 0; i < 4; i++) {
+							if (slots[i] >= 0) values[slots[i]] = tokenizer.getDouble(i + 1);
+						}
+					}
+				} else if (!tagSlots.isEmpty()) {
+					group.setLength(0);
+					tokenizer.appendTo(group, 0);
+					for (int i = 1; i < count - 2; i++) {
+						group.append('_');
+						tokenizer.appendTo(group, i);
+					}
+					int[] slots = tagSlots.get(group.toString());
+					if (slots != null) {
+						for (int i = 0; i < 2; i++) {
+							if (slots[i] >= 0) values[slots[i]] = tokenizer.getDouble(count - 2 + i);
+						}
+					}
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Reads every value in directory into the maps by full name, either map can be null.
+	 */
+	static void readMaps(File directory, Map<String, String> compGeomMap, Map<String, String> tagCompGeomMap) throws Exception {
+		HashMap<String, Integer> nameCount = new HashMap<>();
+		StringBuilder group = new StringBuilder();
+		try (Reader reader = new FileReader(new File(directory, FILENAME))) {
+			CSVTokenizer tokenizer = new CSVTokenizer(reader);
+			boolean firstTable = true;
+			tokenizer.skip(); // read headers
+			while (tokenizer.next()) {
+				int count = tokenizer.count();
+				if (count < 3) {
+					firstTable = false;
+					tokenizer.skip(); // read 2nd headers after blank line
+				} else if (firstTable) { // old table
+					if (compGeomMap != null) {
+						if (count != 5) {
+							throw new Exception(String.format("CompGeom table has %d columns not 5/n%s", count, tokenizer.getLine()));
+						}
+						// Keep names unique by adding a count
+						String name = tokenizer.getString(0);
+						if (!name.equals("Totals")) {
+							Integer n = nameCount.get(name);
+							n = (n == null) ? 0 : n + 1;
+							nameCount.put(name, n);
+							name += n;
+						}
+						String prefix = COMPGEOM + ":" + name + ":";
+						for (int i = 1; i < 5; i++) {
+							compGeomMap.put(prefix + COMPGEOMVALUES[i - 1], tokenizer.getString(i));
+						}
+					}
+				} else if (tagCompGeomMap != null) { // tag table
+					group.setLength(0);
+					group.append(COMPGEOM2).append(':');
+					tokenizer.appendTo(group, 0);
+					for (int i = 1; i < count - 2; i++) {
+						group.append('_');
+						tokenizer.appendTo(group, i);
+					}
+					group.append(':');
+					String prefix = group.toString();
+					for (int i = 0; i < 2; i++) {
+						tagCompGeomMap.put(prefix + COMPGEOMVALUES2[i], tokenizer.getString(count - 2 + i));
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static openvsp3plugin.OpenVSP3Plugin.DEGENGEOM;
+import static openvsp3plugin.OpenVSP3Plugin.DEGENGEOMVALUES;
+
+/**
+ * This class reads OpenVSP3PluginDegenGeom.csv into columns of doubles and gives the DegenGeom outputs of an AnalysisPlan.
+ * The file is a list of components (LIFTING_SURFACE, BODY, DISK) each with sections (SURFACE_NODE, SURFACE_FACE,
+ * PLATE, STICK_NODE, STICK_FACE, POINT ...), a section has one or more tables of a # line naming the columns
+ * followed by rows of numbers. Components are named like the MassProperties groups, the name and a count.
+ * The summaries for the outputs (DEGENGEOMVALUES) are:
+ * PlanformArea, the sum over the stick segments of the mean chord times the leading edge step normal to the chord,
+ * WettedArea, the sum of the SURFACE_FACE areas and
+ * StickLength, the length of the stick leading edge.
+ */
+class DegenGeomReader {
+
+	static final String FILENAME = "OpenVSP3PluginDegenGeom.csv";
+	static final Set<String> COMPONENTS = new HashSet<>(Arrays.asList("LIFTING_SURFACE", "BODY", "DISK"));
+	// the sections the summaries need
+	private static final Set<String> SUMMARYSECTIONS = new HashSet<>(Arrays.asList("SURFACE_FACE", "STICK_NODE"));
+	private final List<DesignVariable> outputs;
+	private final Map<String, int[]> slots = new HashMap<>();
+
+	/**
+	 * One table of a section, data[column][row].
+	 */
+	static class Table {
+
+		private final String[] columns;
+		private double[][] data;
+		private int rows = 0;
+
+		private Table(String[] columns) {
+			this.columns = columns;
+			data = new double[columns.length][64];
+		}
+
+		private void add(CSVTokenizer tokenizer) {
+			if (rows == data[0].length) {
+				for (int i = 0; i < columns.length; i++) data[i] = Arrays.copyOf(data[i], 2 * rows);
+			}
+			for (int i = 0; i < columns.length; i++) {
+				double value = Double.NaN;
+				if (i < tokenizer.count()) {
+					try {
+						value = tokenizer.getDouble(i);
+					} catch (NumberFormatException ex) {
+						// nan, inf
+					}
+				}
+				data[i][rows] = value;
+			}
+			rows++;
+		}
+
+		String[] getColumns() {
+			return columns;
+		}
+
+		int getColumn(String name) {
+			return Arrays.asList(columns).indexOf(name);
+		}
+
+		int getRows() {
+			return rows;
+		}
+
+		/**
+		 * Returns the column values, the array can be longer than getRows().
+		 */
+		double[] getData(int column) {
+			return data[column];
+		}
+	}
+
+	static class Section {
+
+		private final String type;
+		private final List<Table> tables = new ArrayList<>();
+
+		private Section(String type) {
+			this.type = type;
+		}
+
+		String getType() {
+			return type;
+		}
+
+		List<Table> getTables() {
+			return tables;
+		}
+
+		/**
+		 * Returns the table with the named column or null.
+		 */
+		Table getTable(String column) {
+			for (Table table : tables) {
+				if (table.getColumn(column) >= 0) return table;
+			}
+			return null;
+		}
+	}
+
+	static class Component {
+
+		private final String type;
+		private final String group;
+		private final List<Section> sections = new ArrayList<>();
+
+		private Component(String type, String group) {
+			this.type = type;
+			this.group = group;
+		}
+
+		String getType() {
+			return type;
+		}
+
+		/**
+		 * Returns the name and count like the output group.
+		 */
+		String getGroup() {
+			return group;
+		}
+
+		List<Section> getSections() {
+			return sections;
+		}
+
+		/**
+		 * Returns the first section of type or null.
+		 */
+		Section getSection(String type) {
+			for (Section section : sections) {
+				if (section.getType().equals(type)) return section;
+			}
+			return null;
+		}
+
+		/**
+		 * Returns the summaries in DEGENGEOMVALUES order, NaN if the sections are missing.
+		 */
+		double[] getSummary() {
+			double[] summary = {Double.NaN, Double.NaN, Double.NaN};
+			Table stick = (getSection("STICK_NODE") == null) ? null : getSection("STICK_NODE").getTable("lex");
+			if ((stick != null) && (stick.getColumn("tez") >= 0)) {
+				double[][] le = {stick.getData(stick.getColumn("lex")), stick.getData(stick.getColumn("ley")), stick.getData(stick.getColumn("lez"))};
+				double[][] te = {stick.getData(stick.getColumn("tex")), stick.getData(stick.getColumn("tey")), stick.getData(stick.getColumn("tez"))};
+				double area = 0.0;
+				double length = 0.0;
+				double[] step = new double[3];
+				double[] chord = new double[3];
+				for (int i = 1; i < stick.getRows(); i++) {
+					double chord0 = 0.0;
+					double chord1 = 0.0;
+					for (int j = 0; j < 3; j++) {
+						step[j] = le[j][i] - le[j][i - 1];
+						double c0 = te[j][i - 1] - le[j][i - 1];
+						double c1 = te[j][i] - le[j][i];
+						chord0 += c0 * c0;
+						chord1 += c1 * c1;
+						chord[j] = c0 + c1;
+					}
+					double stepLength = Math.sqrt(dot(step, step));
+					length += stepLength;
+					double chordLength = Math.sqrt(dot(chord, chord));
+					double normal = (chordLength == 0.0) ? stepLength : Math.sqrt(Math.max(0.0, dot(step, step) - Math.pow(dot(step, chord) / chordLength, 2)));
+					area += 0.5 * (Math.sqrt(chord0) + Math.sqrt(chord1)) * normal;
+				}
+				summary[0] = area;
+				summary[2] = length;
+			}
+			Table faces = (getSection("SURFACE_FACE") == null) ? null : getSection("SURFACE_FACE").getTable("area");
+			if (faces != null) {
+				double[] areas = faces.getData(faces.getColumn("area"));
+				double area = 0.0;
+				for (int i = 0; i < faces.getRows(); i++) {
+					if (!Double.isNaN(areas[i])) area += areas[i];
+				}
+				summary[1] = area;
+			}
+			return summary;
+		}
+
+		private static double dot(double[] a, double[] b) {
+			return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+		}
+	}
+
+	DegenGeomReader(List<DesignVariable> degenGeomOutputs) {
+		outputs = new ArrayList<>(degenGeomOutputs);
+		for (int slot = 0; slot < outputs.size(); slot++) {
+			DesignVariable dv = outputs.get(slot);
+			int column = Arrays.asList(DEGENGEOMVALUES).indexOf(dv.getName());
+			if (!dv.getContainer().equals(DEGENGEOM) || (column < 0)) continue;
+			int[] groupSlots = slots.get(dv.getGroup());
+			if (groupSlots == null) {
+				groupSlots = new int[DEGENGEOMVALUES.length];
+				Arrays.fill(groupSlots, -1);
+				slots.put(dv.getGroup(), groupSlots);
+			}
+			groupSlots[column] = slot;
+		}
+	}
+
+	List<DesignVariable> getOutputs() {
+		return outputs;
+	}
+
+	boolean isEmpty() {
+		return outputs.isEmpty();
+	}
+
+	/**
+	 * Reads the summaries for the outputs from directory, the array is in getOutputs() order.
+	 * Only the sections the summaries use are kept, Totals is the sum of the components.
+	 */
+	double[] read(File directory) throws Exception {
+		double[] values = new double[outputs.size()];
+		Arrays.fill(values, Double.NaN);
+		if (outputs.isEmpty()) return values;
+		double[] totals = new double[DEGENGEOMVALUES.length];
+		for (Component component : readComponents(directory, SUMMARYSECTIONS)) {
+			double[] summary = component.getSummary();
+			for (int i = 0; i < summary.length; i++) {
+				if (!Double.isNaN(summary[i])) totals[i] += summary[i];
+			}
+			setValues(values, slots.get(component.getGroup()), summary);
+		}
+		setValues(values, slots.get("Totals"), totals);
+		return values;
+	}
+
+	private static void setValues(double[] values, int[] groupSlots, double[] summary) {
+		if (groupSlots == null) return;
+		for (int i = 0; i < summary.length; i++) {
+			if (groupSlots[i] >= 0) values[groupSlots[i]] = summary[i];
+		}
+	}
+
+	/**
+	 * Reads the components in directory keeping the sections in sectionTypes, all of them if it is null.
+	 */
+	static List<Component> readComponents(File directory, Set<String> sectionTypes) throws Exception {
+		List<Component> components = new ArrayList<>();
+		Map<String, Integer> nameCount = new HashMap<>();
+		try (Reader reader = new FileReader(new File(directory, FILENAME))) {
+			CSVTokenizer tokenizer = new CSVTokenizer(reader);
+			Component component = null;
+			Section section = null;
+			Table table = null;
+			String[] columns = null;
+			while (tokenizer.next()) {
+				int count = tokenizer.count();
+				if (count == 0) continue;
+				if (tokenizer.startsWith("#")) {
+					// column names for the rows that follow
+					int first = tokenizer.equals(0, "#") ? 1 : 0;
+					columns = new String[count - first];
+					for (int i = first; i < count; i++) columns[i - first] = tokenizer.getString(i);
+					if ((first == 0) && (columns.length > 0)) columns[0] = columns[0].substring(1);
+					table = null;
+				} else if (tokenizer.isUpperCase(0)) {
+					String type = tokenizer.getString(0);
+					if (COMPONENTS.contains(type)) {
+						String name = (count > 1) ? tokenizer.getString(1) : type;
+						Integer n = nameCount.get(name);
+						n = (n == null) ? 0 : n + 1;
+						nameCount.put(name, n);
+						component = new Component(type, name + n);
+						components.add(component);
+						section = null;
+					} else if ((component != null) && ((sectionTypes == null) || sectionTypes.contains(type))) {
+						section = new Section(type);
+						component.sections.add(section);
+					} else {
+						section = null;
+					}
+					columns = null;
+					table = null;
+				} else if ((section != null) && (columns != null) && (columns.length > 0)) {
+					if (table == null) {
+						table = new Table(columns);
+						section.tables.add(table);
+					}
+					table.add(tokenizer);
+				}
+			}
+		}
+		return components;
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class watches one file and calls onChange on its own daemon thread after the file is modified.
+ * OpenVSP may write a file in several steps so it waits until there are no more events for SETTLEMILLIS.
+ */
+class FileWatcher {
+
+	private static final Logger LOG = new Logger(FileWatcher.class.getSimpleName());
+	private static final long SETTLEMILLIS = 500;
+
+	private final File file;
+	private final Runnable onChange;
+	private WatchService watchService = null;
+
+	FileWatcher(File file, Runnable onChange) {
+		this.file = file.getAbsoluteFile();
+		this.onChange = onChange;
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	void start() throws IOException {
+		LOG.trace("start() " + file.getName());
+		watchService = FileSystems.getDefault().newWatchService();
+		file.getParentFile().toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		Thread thread = new Thread(this::watch, "FileWatcher " + file.getName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void stop() {
+		LOG.trace("stop() " + file.getName());
+		try {
+			if (watchService != null) watchService.close();
+		} catch (IOException ex) {
+			LOG.warn("stop() " + ex);
+		}
+	}
+
+	private void watch() {
+		Path name = file.toPath().getFileName();
+		long lastModified = file.lastModified();
+		long length = file.length();
+		try {
+			while (true) {
+				if (!isFileEvent(watchService.take(), name)) continue;
+				WatchKey key;
+				while ((key = watchService.poll(SETTLEMILLIS, TimeUnit.MILLISECONDS)) != null) isFileEvent(key, name);
+				if ((file.lastModified() != lastModified) || (file.length() != length)) {
+					lastModified = file.lastModified();
+					length = file.length();
+					LOG.debug("watch() " + file.getName() + " changed");
+					onChange.run();
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException ex) {
+			LOG.trace("watch() stopped " + file.getName());
+		}
+	}
+
+	private static boolean isFileEvent(WatchKey key, Path name) {
+		boolean found = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (name.equals(event.context())) found = true;
+		}
+		key.reset();
+		return found;
+	}
+}
@@ -18,7 +18,9 @@
 package openvsp3plugin;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.regex.Pattern;
@@ -69,6 +71,12 @@ class JavaFXUI {
 	
 	private static final Logger LOG = new Logger(JavaFXUI.class.getSimpleName());
 	
+	private static Boolean watchFile = Boolean.getBoolean("OpenVSP3Plugin.watchFile");
+
+	public static void setWatchFile(Boolean value) {
+		watchFile = value;
+	}
+	
 	private BorderPane root;
 	@FXML private Button applyButton;
 	@FXML private Button revertButton;
@@ -110,6 +118,9 @@ class JavaFXUI {
 	private FileChooser fileChooser = new FileChooser();
 	private boolean loadingFile = false;
 	private Pattern emptyPattern = Pattern.compile("");
+	private FileWatcher fileWatcher = null;
+	private Map<String, String> lastCompGeomMap = new LinkedHashMap<>();
+	private Map<String, String> lastTagCompGeomMap = new LinkedHashMap<>();
 	
 	/**
 	 * From http://news.kynosarges.org/2014/05/01/simulating-platform-runandwait/ 
@@ -282,6 +293,12 @@ class JavaFXUI {
 		}
 	}
 	
+	@FXML
+	void stopOpenVSPAction(ActionEvent event) {
+		LOG.trace("stopOpenVSPAction()");
+		plugin.cancelOpenVSP();
+	}
+	
 	@FXML
 	void resetMCtoVSPAction(ActionEvent event) {
 		LOG.trace("resetMCtoVSP()");
@@ -485,14 +502,9 @@ class JavaFXUI {
 			// read the xml file
 			openVSP3File.read(file);
 			lastLoadedFile = path;
-			// write script file
-			plugin.writeCompGeomScriptFile("OpenVSP3Plugin.vspscript");
-			// run simple compgeom
-			plugin.runOpenVSPScript(file.getAbsolutePath());
-			// read the compgeom
-			Map<String, String> compGeomMap = new LinkedHashMap<>();
-			Map<String, String> tagCompGeomMap = new LinkedHashMap<>();
-			plugin.readCompGeomMaps(compGeomMap, tagCompGeomMap);
+			runCompGeom(file);
+			Map<String, String> compGeomMap = lastCompGeomMap;
+			Map<String, String> tagCompGeomMap = lastTagCompGeomMap;
 			if (dialogIsVisible) {
 				Platform.runLater(() -> {
 					updateOpenVSP3File(compGeomMap, tagCompGeomMap, state, loadFile);
@@ -506,6 +518,112 @@ class JavaFXUI {
 		}
 	}
 		
+	private void runCompGeom(File file) throws Exception {
+		runCompGeom(file, plugin.tempDir);
+	}
+	
+	private void runCompGeom(File file, String directory) throws Exception {
+		// write script file
+		plugin.writeCompGeomScriptFile(new File(directory), "OpenVSP3Plugin.vspscript");
+		// run simple compgeom
+		plugin.runOpenVSPScript(file.getAbsolutePath(), new File(directory), OpenVSPSupervisor.getBudgetMillis(AnalysisPlan.Type.COMPGEOM));
+		// read the compgeom
+		Map<String, String> compGeomMap = new LinkedHashMap<>();
+		Map<String, String> tagCompGeomMap = new LinkedHashMap<>();
+		plugin.readCompGeomMaps(directory, compGeomMap, tagCompGeomMap);
+		lastCompGeomMap = compGeomMap;
+		lastTagCompGeomMap = tagCompGeomMap;
+	}
+	
+	/**
+	 * Called when the FileWatcher sees the loaded file change, e.g. it was saved in OpenVSP.
+	 * Only the changed Geom containers are rebuilt and CompGeom only runs again if one of them changed.
+	 * The reload always runs on a background thread and CompGeom runs in its own workspace,
+	 * so it can not overwrite the script or outputs of a run in tempDir.
+	 * The design variables keep their checked state so restoreState() is not needed.
+	 */
+	private void reloadFile() {
+		LOG.trace("reloadFile()");
+		if (loadingFile || (openVSP3File == null) || (fileWatcher == null)) return;
+		File file = fileWatcher.getFile();
+		if (!file.exists()) return;
+		ignoreUpdate = true;
+		loadingFile = true;
+		label.setText("Reloading File...");
+		lockUI();
+		Thread th = new Thread(new Task<Void>() {
+			@Override
+			protected Void call() throws Exception {
+				reloadFile(file);
+				return null;
+			}
+		});
+		th.setDaemon(true);
+		th.start();
+	}
+	
+	private void reloadFile(File file) {
+		LOG.trace(String.format("reloadFile(%s)", file.getName()));
+		try {
+			if (openVSP3File.reload(file)) {
+				OpenVSPWorkspaces workspaces = OpenVSPWorkspaces.getWorkspaces();
+				File workspace = workspaces.acquire("OpenVSP3PluginReload_");
+				try {
+					runCompGeom(file, workspace.toString());
+				} finally {
+					workspaces.release(workspace);
+				}
+			}
+			Platform.runLater(() -> {
+				updateReloadedFile();
+			});
+		} catch (Exception ex) {
+			unlockUI(true);
+			dialog.showErrorPopup(ex);
+		}
+	}
+	
+	private void updateReloadedFile() {
+		LOG.trace("updateReloadedFile()");
+		try {
+			openVSP3File.updateCompGeom(lastCompGeomMap);
+			openVSP3File.updateTagCompGeom(lastTagCompGeomMap);
+			ignoreUpdate = false;
+			unlockUI(false);
+			if (!setChoiceBox.getItems().equals(openVSP3File.getSetNames())) {
+				setChoiceBox.getItems().setAll(openVSP3File.getSetNames());
+				setChoiceBox.getSelectionModel().select(0);
+			}
+			updateTreeView();
+			updateSelection();
+		} catch (Exception ex) {
+			unlockUI(true);
+			dialog.showErrorPopup(ex);
+		}
+	}
+	
+	private void watchFile() {
+		if (!watchFile) return;
+		File file = new File(lastLoadedFile).getAbsoluteFile();
+		if ((fileWatcher != null) && fileWatcher.getFile().equals(file)) return;
+		if (fileWatcher != null) fileWatcher.stop();
+		fileWatcher = new FileWatcher(file, () -> Platform.runLater(() -> reloadFile()));
+		try {
+			fileWatcher.start();
+		} catch (IOException ex) {
+			LOG.warn("watchFile() could not watch " + file + " " + ex);
+			fileWatcher = null;
+		}
+	}
+	
+	/**
+	 * Stops watching the loaded file, called when the dialog is disposed.
+	 */
+	void stopWatchingFile() {
+		if (fileWatcher != null) fileWatcher.stop();
+		fileWatcher = null;
+	}
+	
 	void updateOpenVSP3File(Map<String, String> compGeomMap, Map<String, String> tagCompGeomMap, PluginState state, boolean loadFile) {
 		LOG.trace(String.format("updateOpenVSP3File(compGeomMap, tagCompGeomMap, %s, %b)",
 				PluginState.argString(state), loadFile));
@@ -568,6 +686,28 @@ class JavaFXUI {
 		treeView.getSelectionModel().select(rootItem);
 	}
 	
+	/**
+	 * Like loadTreeView() but only replaces the containers that changed, the others keep their expanded state.
+	 */
+	private void updateTreeView() {
+		LOG.trace("updateTreeView()");
+		List<TreeItem<DesignVariableGroup>> containers = openVSP3File.getContainerArrayList();
+		ObservableList<TreeItem<DesignVariableGroup>> children = rootItem.getChildren();
+		if (children.size() != containers.size()) {
+			children.setAll(containers);
+		} else {
+			for (int i = 0; i < containers.size(); i++) {
+				if (children.get(i) != containers.get(i)) children.set(i, containers.get(i));
+			}
+		}
+		List<DesignVariable> rootDesignVariables = rootItem.getValue().getDesignVariables();
+		rootDesignVariables.clear();
+		for (TreeItem<DesignVariableGroup> container : containers) {
+			rootDesignVariables.addAll(container.getValue().getDesignVariables());
+		}
+		if (treeView.getSelectionModel().getSelectedItems().isEmpty()) treeView.getSelectionModel().select(rootItem);
+	}
+	
 	private void updateFile() {
 		LOG.trace("updateFile()");
 		ignoreUpdate = false;
@@ -579,6 +719,7 @@ class JavaFXUI {
 		setChoiceBox.getSelectionModel().select(0);
 		updateFilters();
 		loadTreeView();
+		watchFile();
 	}
 	
 	private void updateSelection() {
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static openvsp3plugin.OpenVSP3Plugin.MASSPROP;
+import static openvsp3plugin.OpenVSP3Plugin.MASSPROPVALUES;
+
+/**
+ * This class reads OpenVSP3PluginMassProp.txt for the MassProp outputs of an AnalysisPlan.
+ * readTable() gives the whole table as doubles, a row for each component instance named like the output groups
+ * (the component name and its count, or Totals) and a column for each MASSPROPVALUES entry.
+ * read() gives the values of the outputs in getOutputs() order, the missing values are NaN.
+ */
+class MassPropReader {
+
+	static final String FILENAME = "OpenVSP3PluginMassProp.txt";
+	private final List<DesignVariable> outputs;
+	private final Map<String, int[]> slots = new HashMap<>();
+
+	/**
+	 * The MassProp table, values[row * MASSPROPVALUES.length + column].
+	 */
+	static class Table {
+
+		private final List<String> groups = new ArrayList<>();
+		private double[] values = new double[16 * MASSPROPVALUES.length];
+
+		private void add(String group, CSVTokenizer tokenizer) {
+			int offset = groups.size() * MASSPROPVALUES.length;
+			if (offset + MASSPROPVALUES.length > values.length) values = Arrays.copyOf(values, 2 * values.length);
+			for (int i = 0; i < MASSPROPVALUES.length; i++) values[offset + i] = tokenizer.getDouble(i + 1);
+			groups.add(group);
+		}
+
+		int getRows() {
+			return groups.size();
+		}
+
+		String getGroup(int row) {
+			return groups.get(row);
+		}
+
+		double getValue(int row, int column) {
+			return values[row * MASSPROPVALUES.length + column];
+		}
+	}
+
+	MassPropReader(List<DesignVariable> massPropOutputs) {
+		outputs = new ArrayList<>(massPropOutputs);
+		for (int slot = 0; slot < outputs.size(); slot++) {
+			DesignVariable dv = outputs.get(slot);
+			int column = Arrays.asList(MASSPROPVALUES).indexOf(dv.getName());
+			if (!dv.getContainer().equals(MASSPROP) || (column < 0)) continue;
+			int[] groupSlots = slots.get(dv.getGroup());
+			if (groupSlots == null) {
+				groupSlots = new int[MASSPROPVALUES.length];
+				Arrays.fill(groupSlots, -1);
+				slots.put(dv.getGroup(), groupSlots);
+			}
+			groupSlots[column] = slot;
+		}
+	}
+
+	List<DesignVariable> getOutputs() {
+		return outputs;
+	}
+
+	boolean isEmpty() {
+		return outputs.isEmpty();
+	}
+
+	/**
+	 * Reads the values for the outputs from directory, the array is in getOutputs() order.
+	 */
+	double[] read(File directory) throws Exception {
+		double[] values = new double[outputs.size()];
+		Arrays.fill(values, Double.NaN);
+		if (outputs.isEmpty()) return values;
+		Table table = readTable(directory);
+		for (int row = 0; row < table.getRows(); row++) {
+			int[] groupSlots = slots.get(table.getGroup(row));
+			if (groupSlots == null) continue;
+			for (int i = 0; i < MASSPROPVALUES.length; i++) {
+				if (groupSlots[i] >= 0) values[groupSlots[i]] = table.getValue(row, i);
+			}
+		}
+		return values;
+	}
+
+	static Table readTable(File directory) throws Exception {
+		Table table = new Table();
+		try (Reader reader = new FileReader(new File(directory, FILENAME))) {
+			CSVTokenizer tokenizer = new CSVTokenizer(reader);
+			// the table follows the Name header line
+			boolean foundTable = false;
+			while (!foundTable && tokenizer.skip()) foundTable = tokenizer.startsWith("Name");
+			String lastName = "";
+			int counter = 0;
+			while (tokenizer.next()) {
+				if (tokenizer.startsWith("Name")) continue;
+				if (tokenizer.count() > MASSPROPVALUES.length) {
+					// repeated components are numbered while their rows are together
+					if (!tokenizer.equals(0, lastName)) {
+						counter = 0;
+						lastName = tokenizer.getString(0);
+					} else {
+						counter++;
+					}
+					table.add(lastName.equals("Totals") ? lastName : lastName + counter, tokenizer);
+				}
+			}
+		}
+		return table;
+	}
+}
@@ -0,0 +1,791 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import static openvsp3plugin.OpenVSP3Plugin.CFDFILE;
+import static openvsp3plugin.OpenVSP3Plugin.MESH;
+import static openvsp3plugin.OpenVSP3Plugin.MESHVALUES;
+
+/**
+ * This class summarizes the stl, tri and msh files OpenVSP exports for the Mesh outputs of an AnalysisPlan,
+ * so a study that only needs the triangle count, area, bounding box or watertightness does not pass the file on.
+ * The file is split in chunks that are read on the common ForkJoinPool, meshThreads chunks or more
+ * so each is less than 1 GB. A chunk is read with positional reads into a direct buffer that is reused for the chunk,
+ * the file is not memory mapped because on Windows a mapping keeps OpenVSP from writing the file again
+ * and the workspace from being deleted until the buffer is collected. Binary and ASCII stl, ASCII Cart3D tri and Gmsh 2 ASCII msh (element type 2) are read.
+ * The edges are only counted if an edge output is asked for: an edge used by one triangle is open, by more than two
+ * non-manifold, the mesh is watertight without either. The tri and msh edges are compared by vertex index and
+ * the stl edges, which have no shared vertices, by a 64 bit hash of the end point coordinates.
+ */
+class MeshReader {
+
+	private static final Logger LOG = new Logger(MeshReader.class.getSimpleName());
+	private static final long CHUNK = 1L << 30;
+	// bytes read past the end of a chunk for the facet, line or number that starts in it
+	private static final int SLACK = 1 << 16;
+	// bytes read from the file at once
+	private static final int WINDOW = 1 << 20;
+	private static final int EDGEOUTPUTS = MESHVALUES.length - 3;
+	private static Integer meshThreads = Integer.getInteger("OpenVSP3Plugin.meshThreads", Runtime.getRuntime().availableProcessors());
+	private final List<DesignVariable> outputs;
+	private final Map<String, int[]> slots = new LinkedHashMap<>();
+
+	public static void setMeshThreads(Integer meshThreads) {
+		MeshReader.meshThreads = meshThreads;
+	}
+
+	/**
+	 * The summary of one mesh file, the edge counts are -1 if they were not counted.
+	 */
+	static class Summary {
+
+		private long triangles = 0;
+		private double area = 0.0;
+		private final double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+		private final double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		private long openEdges = -1;
+		private long nonManifoldEdges = -1;
+
+		/**
+		 * Returns the values in MESHVALUES order, the edge values are NaN if the edges were not counted
+		 * and the bounding box is NaN if there are no triangles.
+		 */
+		double[] getValues() {
+			boolean counted = openEdges >= 0;
+			double[] box = new double[6];
+			for (int i = 0; i < 3; i++) {
+				box[i] = (triangles == 0) ? Double.NaN : min[i];
+				box[i + 3] = (triangles == 0) ? Double.NaN : max[i];
+			}
+			return new double[] {triangles, area, box[0], box[1], box[2], box[3], box[4], box[5],
+				counted ? openEdges : Double.NaN, counted ? nonManifoldEdges : Double.NaN,
+				counted ? (((openEdges == 0) && (nonManifoldEdges == 0) && (triangles > 0)) ? 1.0 : 0.0) : Double.NaN};
+		}
+
+		private void add(double[] v) {
+			double ux = v[3] - v[0];
+			double uy = v[4] - v[1];
+			double uz = v[5] - v[2];
+			double wx = v[6] - v[0];
+			double wy = v[7] - v[1];
+			double wz = v[8] - v[2];
+			double cx = uy * wz - uz * wy;
+			double cy = uz * wx - ux * wz;
+			double cz = ux * wy - uy * wx;
+			area += 0.5 * Math.sqrt(cx * cx + cy * cy + cz * cz);
+			for (int i = 0; i < 9; i++) {
+				if (v[i] < min[i % 3]) min[i % 3] = v[i];
+				if (v[i] > max[i % 3]) max[i % 3] = v[i];
+			}
+			triangles++;
+		}
+
+		private void add(Summary part) {
+			triangles += part.triangles;
+			area += part.area;
+			for (int i = 0; i < 3; i++) {
+				min[i] = Math.min(min[i], part.min[i]);
+				max[i] = Math.max(max[i], part.max[i]);
+			}
+		}
+	}
+
+	/**
+	 * The summary and edge keys of one chunk, the keys are split in partitions so they can be counted in parallel.
+	 */
+	private static class Part {
+
+		private final Summary summary = new Summary();
+		private final long[][] edges;
+		private final int[] counts;
+
+		private Part(boolean countEdges, int partitions) {
+			edges = countEdges ? new long[partitions][1024] : null;
+			counts = countEdges ? new int[partitions] : null;
+		}
+
+		/**
+		 * Adds a triangle of the vertexes with indexes a, b and c, the edge keys are the two indexes.
+		 */
+		private void addIndexed(double[] v, int a, int b, int c) {
+			summary.add(v);
+			if (edges == null) return;
+			addEdge(indexKey(a, b));
+			addEdge(indexKey(b, c));
+			addEdge(indexKey(c, a));
+		}
+
+		/**
+		 * Adds a triangle that has no vertex indexes, the edge keys are hashes of the coordinates.
+		 */
+		private void addHashed(double[] v) {
+			summary.add(v);
+			if (edges == null) return;
+			long a = vertexKey(v, 0);
+			long b = vertexKey(v, 3);
+			long c = vertexKey(v, 6);
+			addEdge(hashKey(a, b));
+			addEdge(hashKey(b, c));
+			addEdge(hashKey(c, a));
+		}
+
+		private void addEdge(long key) {
+			int p = (int) ((mix(key) >>> 1) % edges.length);
+			if (counts[p] == edges[p].length) edges[p] = Arrays.copyOf(edges[p], 2 * counts[p]);
+			edges[p][counts[p]++] = key;
+		}
+	}
+
+	private interface Task<T> {
+		T run(int index) throws Exception;
+	}
+
+	MeshReader(List<DesignVariable> meshOutputs) {
+		outputs = new ArrayList<>(meshOutputs);
+		for (int slot = 0; slot < outputs.size(); slot++) {
+			DesignVariable dv = outputs.get(slot);
+			int column = Arrays.asList(MESHVALUES).indexOf(dv.getName());
+			if (!dv.getContainer().equals(MESH) || (column < 0)) continue;
+			int[] groupSlots = slots.get(dv.getGroup());
+			if (groupSlots == null) {
+				groupSlots = new int[MESHVALUES.length];
+				Arrays.fill(groupSlots, -1);
+				slots.put(dv.getGroup(), groupSlots);
+			}
+			groupSlots[column] = slot;
+		}
+	}
+
+	List<DesignVariable> getOutputs() {
+		return outputs;
+	}
+
+	boolean isEmpty() {
+		return outputs.isEmpty();
+	}
+
+	/**
+	 * Returns the format of a Mesh group, stl for both stl and CFDFile_stl.
+	 */
+	static String getFormat(String group) {
+		return group.startsWith(CFDFILE + "_") ? group.substring(CFDFILE.length() + 1) : group;
+	}
+
+	/**
+	 * Returns true if the Mesh group is for a CFD mesh file rather than an export.
+	 */
+	static boolean isCFD(String group) {
+		return group.startsWith(CFDFILE + "_");
+	}
+
+	static String getFileName(String group) {
+		return (isCFD(group) ? "OpenVSP3PluginCFD." : "OpenVSP3Plugin.") + getFormat(group);
+	}
+
+	/**
+	 * Reads the summaries for the outputs from directory, the array is in getOutputs() order.
+	 */
+	double[] read(File directory) throws Exception {
+		double[] values = new double[outputs.size()];
+		Arrays.fill(values, Double.NaN);
+		for (Map.Entry<String, int[]> entry : slots.entrySet()) {
+			int[] groupSlots = entry.getValue();
+			boolean countEdges = false;
+			for (int i = EDGEOUTPUTS; i < MESHVALUES.length; i++) countEdges |= groupSlots[i] >= 0;
+			double[] summary = summarize(new File(directory, getFileName(entry.getKey())), countEdges).getValues();
+			for (int i = 0; i < summary.length; i++) {
+				if (groupSlots[i] >= 0) values[groupSlots[i]] = summary[i];
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Summarizes the stl, tri or msh file.
+	 */
+	static Summary summarize(File file, boolean countEdges) throws Exception {
+		long start = System.nanoTime();
+		String name = file.getName();
+		String format = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+		List<Part> parts;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			switch (format) {
+				case "stl":
+					parts = isBinarySTL(channel) ? readBinarySTL(channel, countEdges) : readASCIISTL(channel, countEdges);
+					break;
+				case "tri":
+					parts = readTri(channel, countEdges);
+					break;
+				case "msh":
+					parts = readMsh(channel, countEdges);
+					break;
+				default:
+					throw new Exception("MeshReader can't summarize " + name);
+			}
+		}
+		Summary summary = new Summary();
+		for (Part part : parts) summary.add(part.summary);
+		if (countEdges) countEdges(parts, summary);
+		LOG.debug(String.format("summarize() %s %d triangles in %.1f ms", name, summary.triangles, (System.nanoTime() - start) / 1e6));
+		return summary;
+	}
+
+	private static void countEdges(List<Part> parts, Summary summary) throws Exception {
+		int partitions = parts.get(0).edges.length;
+		List<long[]> counts = parallel(partitions, p -> {
+			int length = 0;
+			for (Part part : parts) length += part.counts[p];
+			long[] keys = new long[length];
+			length = 0;
+			for (Part part : parts) {
+				System.arraycopy(part.edges[p], 0, keys, length, part.counts[p]);
+				length += part.counts[p];
+				part.edges[p] = null;
+			}
+			Arrays.sort(keys);
+			long open = 0;
+			long nonManifold = 0;
+			for (int i = 0; i < keys.length;) {
+				int j = i + 1;
+				while ((j < keys.length) && (keys[j] == keys[i])) j++;
+				if (j - i == 1) open++;
+				else if (j - i > 2) nonManifold++;
+				i = j;
+			}
+			return new long[] {open, nonManifold};
+		});
+		summary.openEdges = 0;
+		summary.nonManifoldEdges = 0;
+		for (long[] count : counts) {
+			summary.openEdges += count[0];
+			summary.nonManifoldEdges += count[1];
+		}
+	}
+
+	private static boolean isBinarySTL(FileChannel channel) throws IOException {
+		long size = channel.size();
+		if (size < 84) return false;
+		ByteBuffer header = read(channel, 80, 84);
+		return size == 84 + 50 * (header.getInt(0) & 0xFFFFFFFFL);
+	}
+
+	private static List<Part> readBinarySTL(FileChannel channel, boolean countEdges) throws Exception {
+		long triangles = (channel.size() - 84) / 50;
+		int chunks = getChunks(triangles * 50);
+		return parallel(chunks, chunk -> {
+			Part part = new Part(countEdges, chunks);
+			long first = triangles * chunk / chunks;
+			long last = triangles * (chunk + 1) / chunks;
+			ByteBuffer buffer = ByteBuffer.allocateDirect(50 * (WINDOW / 50)).order(ByteOrder.LITTLE_ENDIAN);
+			double[] v = new double[9];
+			for (long block = first; block < last; block += WINDOW / 50) {
+				int n = (int) Math.min(WINDOW / 50, last - block);
+				read(channel, buffer, 84 + 50 * block, 50 * n);
+				for (int t = 0; t < n; t++) {
+					for (int i = 0; i < 9; i++) v[i] = buffer.getFloat(50 * t + 12 + 4 * i);
+					part.addHashed(v);
+				}
+			}
+			return part;
+		});
+	}
+
+	/**
+	 * Each chunk reads the facets whose line starts in it, a facet that ends in the next chunk is read from the slack.
+	 */
+	private static List<Part> readASCIISTL(FileChannel channel, boolean countEdges) throws Exception {
+		long size = channel.size();
+		int chunks = getChunks(size);
+		return parallel(chunks, chunk -> {
+			Part part = new Part(countEdges, chunks);
+			long start = size * chunk / chunks;
+			long end = size * (chunk + 1) / chunks;
+			Cursor cursor = new Cursor(channel, Math.max(0, start - 1), Math.min(size, end + SLACK));
+			if (start > 0) cursor.skipLine();
+			double[] v = new double[9];
+			int vertices = -1;
+			while (cursor.hasMore()) {
+				long lineStart = cursor.getOffset();
+				cursor.skipBlanks();
+				if (cursor.word("facet")) {
+					if (lineStart >= end) break;
+					vertices = 0;
+				} else if ((vertices >= 0) && (vertices < 3) && cursor.word("vertex")) {
+					for (int i = 0; i < 3; i++) v[3 * vertices + i] = cursor.readDouble();
+					if (++vertices == 3) part.addHashed(v);
+				}
+				cursor.skipLine();
+			}
+			return part;
+		});
+	}
+
+	/**
+	 * The tri file is the vertex and triangle counts, the vertices, the 1 based triangle vertex indexes
+	 * then the component numbers. The chunks count their numbers first so each knows where its numbers go.
+	 */
+	private static List<Part> readTri(FileChannel channel, boolean countEdges) throws Exception {
+		long size = channel.size();
+		Cursor header = new Cursor(channel, 0, Math.min(size, SLACK));
+		long nVertices = header.readLong();
+		long nTriangles = header.readLong();
+		long dataStart = header.getOffset();
+		if ((nVertices < 0) || (nTriangles < 0) || (3 * Math.max(nVertices, nTriangles) > Integer.MAX_VALUE - 8)) {
+			throw new Exception(String.format("MeshReader can't read a tri file with %d vertices and %d triangles", nVertices, nTriangles));
+		}
+		double[] coordinates = new double[(int) (3 * nVertices)];
+		int[] indexes = new int[(int) (3 * nTriangles)];
+		long numbers = coordinates.length + indexes.length;
+		int chunks = getChunks(size - dataStart);
+		List<Long> counts = parallel(chunks, chunk -> {
+			long start = dataStart + (size - dataStart) * chunk / chunks;
+			long end = dataStart + (size - dataStart) * (chunk + 1) / chunks;
+			Cursor cursor = new Cursor(channel, start, end);
+			long count = 0;
+			boolean space = (start == dataStart) || isWhitespace(read(channel, start - 1, start).get(0));
+			while (cursor.hasMore()) {
+				boolean whitespace = isWhitespace(cursor.next());
+				if (space && !whitespace) count++;
+				space = whitespace;
+			}
+			return count;
+		});
+		long[] firsts = new long[chunks];
+		for (int chunk = 1; chunk < chunks; chunk++) firsts[chunk] = firsts[chunk - 1] + counts.get(chunk - 1);
+		if (firsts[chunks - 1] + counts.get(chunks - 1) < numbers) throw new Exception("MeshReader tri file is too short");
+		parallel(chunks, chunk -> {
+			long start = dataStart + (size - dataStart) * chunk / chunks;
+			long end = dataStart + (size - dataStart) * (chunk + 1) / chunks;
+			long number = firsts[chunk];
+			if ((number >= numbers) || (counts.get(chunk) == 0)) return null;
+			Cursor cursor = new Cursor(channel, Math.max(dataStart, start - 1), Math.min(size, end + SLACK));
+			// skip the end of a number that started in the chunk before
+			if ((start > dataStart) && !isWhitespace(cursor.next())) {
+				while (cursor.hasMore() && !isWhitespace(cursor.peek())) cursor.next();
+			}
+			long last = Math.min(numbers, number + counts.get(chunk));
+			for (; number < last; number++) {
+				if (number < coordinates.length) coordinates[(int) number] = cursor.readDouble();
+				else indexes[(int) (number - coordinates.length)] = (int) cursor.readLong() - 1;
+			}
+			return null;
+		});
+		return readTriangles(coordinates, indexes, countEdges);
+	}
+
+	/**
+	 * Returns the start and end of the $Nodes and $Elements lines and the number of nodes,
+	 * the msh file sections start with $ lines that the chunks find.
+	 */
+	private static long[] findMshSections(FileChannel channel) throws Exception {
+		long size = channel.size();
+		int chunks = getChunks(size);
+		List<List<Long>> found = parallel(chunks, chunk -> {
+			long start = size * chunk / chunks;
+			long end = size * (chunk + 1) / chunks;
+			Cursor cursor = new Cursor(channel, start, end);
+			List<Long> sections = new ArrayList<>();
+			boolean lineStart = (start == 0) || (read(channel, start - 1, start).get(0) == '\n');
+			while (cursor.hasMore()) {
+				byte b = cursor.next();
+				if (lineStart && (b == '$')) sections.add(cursor.getOffset() - 1);
+				lineStart = b == '\n';
+			}
+			return sections;
+		});
+		long nodesStart = -1;
+		long nodesEnd = -1;
+		long elementsStart = -1;
+		long elementsEnd = -1;
+		long nNodes = 0;
+		for (List<Long> sections : found) {
+			for (long offset : sections) {
+				Cursor cursor = new Cursor(channel, offset, Math.min(size, offset + SLACK));
+				if (cursor.word("$MeshFormat")) {
+					cursor.skipLine();
+					if (cursor.readDouble() >= 3) throw new Exception("MeshReader can only read Gmsh 2 msh files");
+				} else if (cursor.word("$Nodes")) {
+					cursor.skipLine();
+					nNodes = cursor.readLong();
+					cursor.skipLine();
+					nodesStart = cursor.getOffset();
+				} else if (cursor.word("$EndNodes")) {
+					nodesEnd = offset;
+				} else if (cursor.word("$Elements")) {
+					cursor.skipLine();
+					cursor.readLong();
+					cursor.skipLine();
+					elementsStart = cursor.getOffset();
+				} else if (cursor.word("$EndElements")) {
+					elementsEnd = offset;
+				}
+			}
+		}
+		if ((nodesStart < 0) || (nodesEnd < nodesStart) || (elementsStart < 0) || (elementsEnd < elementsStart)) {
+			throw new Exception("MeshReader msh file has no $Nodes or $Elements");
+		}
+		return new long[] {nodesStart, nodesEnd, elementsStart, elementsEnd, nNodes};
+	}
+
+	/**
+	 * The chunks read the $Nodes and $Elements lines that start in them.
+	 * The nodes are counted first so each chunk knows where its nodes go.
+	 */
+	private static List<Part> readMsh(FileChannel channel, boolean countEdges) throws Exception {
+		long[] sections = findMshSections(channel);
+		long nodesStart = sections[0];
+		long nodesEnd = sections[1];
+		long elementsStart = sections[2];
+		long elementsEnd = sections[3];
+		long nNodes = sections[4];
+		if (3 * nNodes > Integer.MAX_VALUE - 8) throw new Exception(String.format("MeshReader can't read a msh file with %d nodes", nNodes));
+		double[] coordinates = new double[(int) (3 * nNodes)];
+		long[] ids = new long[(int) nNodes];
+		long nodeBytes = nodesEnd - nodesStart;
+		int nodeChunks = getChunks(nodeBytes);
+		List<Long> counts = parallel(nodeChunks, chunk -> {
+			Cursor cursor = lineCursor(channel, nodesStart, nodesStart + nodeBytes * chunk / nodeChunks, nodesStart + nodeBytes * (chunk + 1) / nodeChunks, nodesEnd);
+			long count = 0;
+			for (long end = nodesStart + nodeBytes * (chunk + 1) / nodeChunks; cursor.hasMore() && (cursor.getOffset() < end); cursor.skipLine()) {
+				if (!cursor.isBlankLine()) count++;
+			}
+			return count;
+		});
+		parallel(nodeChunks, chunk -> {
+			long end = nodesStart + nodeBytes * (chunk + 1) / nodeChunks;
+			Cursor cursor = lineCursor(channel, nodesStart, nodesStart + nodeBytes * chunk / nodeChunks, end, nodesEnd);
+			long node = 0;
+			for (int i = 0; i < chunk; i++) node += counts.get(i);
+			for (; cursor.hasMore() && (cursor.getOffset() < end) && (node < nNodes); cursor.skipLine()) {
+				if (cursor.isBlankLine()) continue;
+				ids[(int) node] = cursor.readLong();
+				for (int i = 0; i < 3; i++) coordinates[(int) (3 * node + i)] = cursor.readDouble();
+				node++;
+			}
+			return null;
+		});
+		int[] nodeIndexes = getNodeIndexes(ids);
+		long elementBytes = elementsEnd - elementsStart;
+		int elementChunks = getChunks(elementBytes);
+		return parallel(elementChunks, chunk -> {
+			Part part = new Part(countEdges, elementChunks);
+			long end = elementsStart + elementBytes * (chunk + 1) / elementChunks;
+			Cursor cursor = lineCursor(channel, elementsStart, elementsStart + elementBytes * chunk / elementChunks, end, elementsEnd);
+			double[] v = new double[9];
+			int[] vertices = new int[3];
+			for (; cursor.hasMore() && (cursor.getOffset() < end); cursor.skipLine()) {
+				if (cursor.isBlankLine()) continue;
+				cursor.readLong();
+				long type = cursor.readLong();
+				if (type != 2) continue;
+				long tags = cursor.readLong();
+				for (long i = 0; i < tags; i++) cursor.readLong();
+				for (int i = 0; i < 3; i++) {
+					long id = cursor.readLong();
+					int index = ((id >= 0) && (id < nodeIndexes.length)) ? nodeIndexes[(int) id] : -1;
+					if (index < 0) throw new Exception("MeshReader msh element has an unknown node " + id);
+					vertices[i] = index;
+					System.arraycopy(coordinates, 3 * index, v, 3 * i, 3);
+				}
+				part.addIndexed(v, vertices[0], vertices[1], vertices[2]);
+			}
+			return part;
+		});
+	}
+
+	/**
+	 * Returns the node index by node id, -1 if there is no node with the id.
+	 */
+	private static int[] getNodeIndexes(long[] ids) throws Exception {
+		long maxId = 0;
+		for (long id : ids) maxId = Math.max(maxId, id);
+		if (maxId > Math.max(16L * ids.length, 1024)) throw new Exception("MeshReader msh node ids are too sparse, the largest is " + maxId);
+		int[] indexes = new int[(int) maxId + 1];
+		Arrays.fill(indexes, -1);
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] >= 0) indexes[(int) ids[i]] = i;
+		}
+		return indexes;
+	}
+
+	private static List<Part> readTriangles(double[] coordinates, int[] indexes, boolean countEdges) throws Exception {
+		int triangles = indexes.length / 3;
+		int vertices = coordinates.length / 3;
+		int chunks = Math.max(1, Math.min(meshThreads, triangles / 4096));
+		return parallel(chunks, chunk -> {
+			Part part = new Part(countEdges, chunks);
+			double[] v = new double[9];
+			for (long t = (long) triangles * chunk / chunks; t < (long) triangles * (chunk + 1) / chunks; t++) {
+				for (int i = 0; i < 3; i++) {
+					int index = indexes[(int) (3 * t + i)];
+					if ((index < 0) || (index >= vertices)) throw new Exception("MeshReader tri triangle has an unknown vertex " + (index + 1));
+					System.arraycopy(coordinates, 3 * index, v, 3 * i, 3);
+				}
+				part.addIndexed(v, indexes[(int) (3 * t)], indexes[(int) (3 * t + 1)], indexes[(int) (3 * t + 2)]);
+			}
+			return part;
+		});
+	}
+
+	/**
+	 * Returns a cursor at the first line that starts at or after start in the section, with slack past end for the last line.
+	 */
+	private static Cursor lineCursor(FileChannel channel, long sectionStart, long start, long end, long sectionEnd) throws IOException {
+		Cursor cursor = new Cursor(channel, Math.max(sectionStart, start - 1), Math.min(sectionEnd, end + SLACK));
+		if (start > sectionStart) cursor.skipLine();
+		return cursor;
+	}
+
+	private static int getChunks(long bytes) {
+		long chunks = Math.max(Math.max(1, meshThreads), (bytes + CHUNK - 1) / CHUNK);
+		// small files are not worth splitting
+		return (int) Math.max(1, Math.min(chunks, bytes / SLACK));
+	}
+
+	private static <T> List<T> parallel(int n, Task<T> task) throws Exception {
+		List<ForkJoinTask<T>> tasks = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			int index = i;
+			tasks.add(ForkJoinPool.commonPool().submit(() -> task.run(index)));
+		}
+		List<T> results = new ArrayList<>();
+		try {
+			for (ForkJoinTask<T> t : tasks) results.add(t.get());
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof Exception) throw (Exception) ex.getCause();
+			throw ex;
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the bytes from start to end in a new buffer, for the few bytes read outside a chunk.
+	 */
+	private static ByteBuffer read(FileChannel channel, long start, long end) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) (end - start)).order(ByteOrder.LITTLE_ENDIAN);
+		read(channel, buffer, start, buffer.capacity());
+		return buffer;
+	}
+
+	/**
+	 * Reads length bytes at start into the beginning of buffer.
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer, long start, int length) throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, start + buffer.position()) < 0) throw new EOFException(String.format("MeshReader read past the end at %d", start + buffer.position()));
+		}
+	}
+
+	private static long indexKey(int a, int b) {
+		return (a < b) ? (((long) a << 32) | b) : (((long) b << 32) | a);
+	}
+
+	private static long hashKey(long a, long b) {
+		return (a < b) ? mix(a + 31 * mix(b)) : mix(b + 31 * mix(a));
+	}
+
+	/**
+	 * Returns a hash of the vertex coordinates, 0 and -0 are the same.
+	 */
+	private static long vertexKey(double[] v, int i) {
+		long x = Float.floatToIntBits((float) v[i] + 0.0f);
+		long y = Float.floatToIntBits((float) v[i + 1] + 0.0f);
+		long z = Float.floatToIntBits((float) v[i + 2] + 0.0f);
+		return mix((x << 32) ^ (y & 0xFFFFFFFFL)) ^ mix(z + 0x9E3779B97F4A7C15L);
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return (b == ' ') || (b == '\n') || (b == '\r') || (b == '\t');
+	}
+
+	/**
+	 * Reads part of the file through a window of at most WINDOW bytes, the window is read again
+	 * from the position when a byte outside it is asked for.
+	 */
+	private static class Cursor {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final long base;
+		private final int limit;
+		private int position = 0;
+		private int windowStart = 0;
+		private int windowEnd = 0;
+		private byte[] token = new byte[64];
+
+		private Cursor(FileChannel channel, long start, long end) throws IOException {
+			this.channel = channel;
+			base = start;
+			limit = (int) (end - start);
+			buffer = ByteBuffer.allocateDirect(Math.max(1, Math.min(limit, WINDOW)));
+		}
+
+		private byte get(int i) throws IOException {
+			if ((i < windowStart) || (i >= windowEnd)) {
+				// look ahead from the position so going back to it does not read again
+				int start = ((i >= position) && (i - position < buffer.capacity())) ? position : i;
+				int length = Math.min(buffer.capacity(), limit - start);
+				read(channel, buffer, base + start, length);
+				windowStart = start;
+				windowEnd = start + length;
+			}
+			return buffer.get(i - windowStart);
+		}
+
+		private long getOffset() {
+			return base + position;
+		}
+
+		private boolean hasMore() {
+			return position < limit;
+		}
+
+		private byte peek() throws IOException {
+			return get(position);
+		}
+
+		private byte next() throws IOException {
+			return get(position++);
+		}
+
+		private void skipLine() throws IOException {
+			while ((position < limit) && (get(position++) != '\n')) {}
+		}
+
+		private void skipBlanks() throws IOException {
+			while ((position < limit) && ((get(position) == ' ') || (get(position) == '\t'))) position++;
+		}
+
+		private boolean isBlankLine() throws IOException {
+			int i = position;
+			while ((i < limit) && ((get(i) == ' ') || (get(i) == '\t') || (get(i) == '\r'))) i++;
+			return (i == limit) || (get(i) == '\n');
+		}
+
+		/**
+		 * Moves past word if it is next and is followed by whitespace or the end.
+		 */
+		private boolean word(String word) throws IOException {
+			int length = word.length();
+			if (position + length > limit) return false;
+			for (int i = 0; i < length; i++) {
+				if (get(position + i) != word.charAt(i)) return false;
+			}
+			if ((position + length < limit) && !isWhitespace(get(position + length))) return false;
+			position += length;
+			return true;
+		}
+
+		/**
+		 * Reads the next whitespace separated token into the token buffer and returns its length.
+		 */
+		private int readToken() throws Exception {
+			while ((position < limit) && isWhitespace(get(position))) position++;
+			int length = 0;
+			while ((position < limit) && !isWhitespace(get(position))) {
+				if (length == token.length) token = Arrays.copyOf(token, 2 * length);
+				token[length++] = get(position++);
+			}
+			if (length == 0) throw new Exception(String.format("MeshReader expected a number at %d", getOffset()));
+			return length;
+		}
+
+		private long readLong() throws Exception {
+			int length = readToken();
+			long value = 0;
+			int i = ((token[0] == '-') || (token[0] == '+')) ? 1 : 0;
+			if (i == length) throw new NumberFormatException(new String(token, 0, length, StandardCharsets.US_ASCII));
+			for (int j = i; j < length; j++) {
+				if ((token[j] < '0') || (token[j] > '9')) throw new NumberFormatException(new String(token, 0, length, StandardCharsets.US_ASCII));
+				value = 10 * value + (token[j] - '0');
+			}
+			return (token[0] == '-') ? -value : value;
+		}
+
+		/**
+		 * Like CSVTokenizer.getDouble(), numbers that can't be converted exactly here are left to Double.parseDouble.
+		 */
+		private double readDouble() throws Exception {
+			int length = readToken();
+			int i = 0;
+			boolean negative = false;
+			if ((token[i] == '-') || (token[i] == '+')) negative = token[i++] == '-';
+			long mantissa = 0;
+			int digits = 0;
+			int exponent = 0;
+			boolean anyDigits = false;
+			boolean point = false;
+			for (; i < length; i++) {
+				byte b = token[i];
+				if ((b >= '0') && (b <= '9')) {
+					anyDigits = true;
+					if ((mantissa != 0) || (b != '0')) digits++;
+					mantissa = 10 * mantissa + (b - '0');
+					if (point) exponent--;
+				} else if ((b == '.') && !point) {
+					point = true;
+				} else {
+					break;
+				}
+			}
+			if (anyDigits && (digits <= 15) && (i < length) && ((token[i] == 'e') || (token[i] == 'E'))) {
+				int j = i + 1;
+				boolean negativeExponent = false;
+				if ((j < length) && ((token[j] == '-') || (token[j] == '+'))) negativeExponent = token[j++] == '-';
+				int value = 0;
+				int start = j;
+				for (; (j < length) && (token[j] >= '0') && (token[j] <= '9') && (j - start < 4); j++) value = 10 * value + (token[j] - '0');
+				if ((j == length) && (j > start)) {
+					exponent += negativeExponent ? -value : value;
+					i = j;
+				}
+			}
+			if (!anyDigits || (digits > 15) || (i != length) || (exponent < -22) || (exponent > 22)) {
+				return Double.parseDouble(new String(token, 0, length, StandardCharsets.US_ASCII));
+			}
+			double value = mantissa;
+			if (exponent < 0) value /= CSVTokenizer.POWERS[-exponent];
+			else if (exponent > 0) value *= CSVTokenizer.POWERS[exponent];
+			return negative ? -value : value;
+		}
+	}
+}
@@ -19,12 +19,10 @@ package openvsp3plugin;
 
 import com.phoenix_int.ModelCenter.AddToModel;
 import com.phoenix_int.ModelCenter.ModelCenter;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import javafx.collections.ObservableList;
 
 /**
  * This class extends OpenVSP3Plugin and contains all the references to ModelCenter and log4j.
@@ -110,13 +108,14 @@ public class ModelCenterPlugin extends OpenVSP3Plugin implements com.phoenix_int
 				if (dialog.checkIfLoadingFile()) throw new Exception("\n\nCan't run until OpenVSP file has successfully loaded.\n");
 				dialog.checkIfStateDirty(pluginState);
 			}
-			writeVSPScriptFile("OpenVSP3Plugin.vspscript");
 			pluginState.writeDesFile(new File(tempDir + "\\OpenVSP3Plugin.des"), shouldSort());
-			runOpenVSPScript(pluginState.getOpenVSPFilename());
+			runOpenVSP();
 			readExportFiles();
 			readCFDFiles();
 			readCompGeom();
 			readMassProp();
+			readDegenGeom();
+			readMesh();
 			readOutputs();
 			// now update the UI
 			if ((dialog != null) && (dialog.isVisible() == true)) {
@@ -135,9 +134,12 @@ public class ModelCenterPlugin extends OpenVSP3Plugin implements com.phoenix_int
 		DIALOGS.put(componentName, DIALOGS.get(componentName) - 1);
 		LOG.debug("onEnd() " + componentName + "count = " + DIALOGS.get(componentName));
 		mcWrapper.onEnd();
+		// stop reloading the vsp3 file before the workspace is handed to another plugin
+		if (dialog != null) dialog.stopWatchingFile();
 		if (pluginState != null) {
-			LOG.debug("onEnd() deleting " + tempDir);
-			deleteDirectoryContents(new File(tempDir));
+			LOG.debug("onEnd() releasing " + tempDir);
+			// the files are deleted on a background thread
+			OpenVSPWorkspaces.getWorkspaces().release(new File(tempDir));
 		}
 		if (dialog != null) {
 			LOG.debug("onEnd() dialog.dispose()");
@@ -204,90 +206,71 @@ public class ModelCenterPlugin extends OpenVSP3Plugin implements com.phoenix_int
 		// if there is no pluginState there is nothing to update
 		if (pluginState == null) return;
 		// Update the input variables with the ModelCenter values
-		ObservableList<DesignVariable> inputs = pluginState.getDesignVariables().filtered(dv -> !dv.isOutput());
-		mcWrapper.updateDVFromMCvalues(inputs, pluginState);
+		mcWrapper.updateDVFromMCvalues(getPlan().getInputs(), pluginState);
 	}
 	
 	private void readExportFiles() throws Exception {
 		LOG.trace("readExportFiles()");
-		ObservableList<DesignVariable> files = pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(FILE)));
-		mcWrapper.readFiles(files, pluginState, tempDir);
+		mcWrapper.readFiles(getPlan().getFileOutputs(), pluginState, tempDir);
 	}
 	
 	private void readCFDFiles() throws Exception {
 		LOG.trace("readCFDFiles()");
-		ObservableList<DesignVariable> files = pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(CFDFILE)));
-		mcWrapper.readFiles(files, pluginState, tempDir);
+		mcWrapper.readFiles(getPlan().getCFDFileOutputs(), pluginState, tempDir);
 	}
 	
 	private void readCompGeom() throws Exception {
 		LOG.trace("readCompGeom()");
-		ObservableList<DesignVariable> compGeoms = pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(COMPGEOM)));
-		ObservableList<DesignVariable> tagCompGeoms = pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(COMPGEOM2)));
-		if ((compGeoms.size() > 0) || (tagCompGeoms.size() > 0)) {
-			// Read the CompGeom file
-			Map<String, String> compGeomMap = new LinkedHashMap<>();
-			Map<String, String> tagCompGeomMap = new LinkedHashMap<>();
-			readCompGeomMaps(compGeomMap, tagCompGeomMap);
-			// Update the Model Center variables
-			// CompGeom
-			mcWrapper.updateMCValuesFromMap(compGeoms, compGeomMap, pluginState);
-			// TagCompGeom
-			mcWrapper.updateMCValuesFromMap(tagCompGeoms, tagCompGeomMap, pluginState);
+		CompGeomReader compGeomReader = getPlan().getCompGeomReader();
+		if (!compGeomReader.isEmpty()) {
+			// Read the CompGeom file and update the Model Center variables, CompGeom and TagCompGeom
+			mcWrapper.updateMCValuesFromArray(compGeomReader.getOutputs(), compGeomReader.read(new File(tempDir)), pluginState);
 		}	
 	}
 	
 	private void readMassProp() throws Exception {
 		LOG.trace("readMassProp()");
-		ObservableList<DesignVariable> massProps = pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(MASSPROP)));
-		if (massProps.size() > 0) {
-			// Read the MassProp file
-			String line;
-			Map<String, String> map = new LinkedHashMap<>();
-			BufferedReader br = new BufferedReader(new FileReader(tempDir.replace("\\", "/") + "/OpenVSP3PluginMassProp.txt"));
-			boolean foundTable = false;
-			String lastName = "";
-			int counter = 0;
-			while ((line = br.readLine()) != null) {
-				if (line.startsWith("Name")){
-					foundTable = true;
-					continue;
-				}
-				if (foundTable) {
-					String[] columns = line.split(CSVSPLITSTRING);
-					if (columns.length > MASSPROPVALUES.length) {
-						if (!lastName.equals(columns[0])) {
-							counter = 0;
-							lastName = columns[0];
-						} else {
-							counter++;
-						}
-						String group = columns[0].equals("Totals") ? columns[0] : columns[0] + counter;
-						for (int i = 0; i < MASSPROPVALUES.length; i++) {
-							map.put(String.format("%s:%s:%s", MASSPROP, group, MASSPROPVALUES[i]), columns[i + 1]);
-						}
-					}
-				}
-			}
-			// Update the Model Center variables
-			mcWrapper.updateMCValuesFromMap(massProps, map, pluginState);
-			br.close();
+		MassPropReader massPropReader = getPlan().getMassPropReader();
+		if (!massPropReader.isEmpty()) {
+			// Read the MassProp file and update the Model Center variables
+			mcWrapper.updateMCValuesFromArray(massPropReader.getOutputs(), massPropReader.read(new File(tempDir)), pluginState);
+		}
+	}
+	
+	private void readDegenGeom() throws Exception {
+		LOG.trace("readDegenGeom()");
+		DegenGeomReader degenGeomReader = getPlan().getDegenGeomReader();
+		if (!degenGeomReader.isEmpty()) {
+			// Read the DegenGeom file and update the Model Center variables
+			mcWrapper.updateMCValuesFromArray(degenGeomReader.getOutputs(), degenGeomReader.read(new File(tempDir)), pluginState);
+		}
+	}
+	
+	private void readMesh() throws Exception {
+		LOG.trace("readMesh()");
+		MeshReader meshReader = getPlan().getMeshReader();
+		if (!meshReader.isEmpty()) {
+			// Summarize the mesh files and update the Model Center variables
+			mcWrapper.updateMCValuesFromArray(meshReader.getOutputs(), meshReader.read(new File(tempDir)), pluginState);
 		}
 	}
 	
 	private void readOutputs() throws Exception {
 		LOG.trace("readOutputs()");
+		AnalysisPlan plan = getPlan();
 		LOG.debug("readOutputs() " + pluginState.getDesignVariables().size() + " Design variables");
-		LOG.debug("readOutputs() " + pluginState.getDesignVariables().filtered(dv -> (dv.isOutput())).size() + " outputs");
-		ObservableList<DesignVariable> outputs = pluginState.getDesignVariables().filtered(dv -> (dv.isOutput() && !dv.getXPath().isEmpty()));
+		LOG.debug("readOutputs() " + plan.getOutputs().size() + " outputs");
+		List<DesignVariable> outputs = plan.getXPathOutputs();
 		LOG.debug("readOutputs() " + outputs.size() + " with XPath defined");
-		XPathUtil xpu = new XPathUtil(new File(tempDir + "/OpenVSP3Plugin.vsp3"));
+		// the plan only writes the vsp3 file if something reads it
+		if (!plan.needsVSP3()) return;
+		XPathUtil xpu = new XPathUtil(new File(tempDir + "/" + AnalysisPlan.VSP3FILE));
 		// Update the Model Center variables
 		mcWrapper.updateMCValuesFromDV(outputs, pluginState, xpu);
 		// check that inputs were applied if dialog exists and epsilon defined
 		if ((dialog != null) && (pluginState.getEpsilon() != null)) {
-			LOG.debug("readOutputs() " + pluginState.getDesignVariables().filtered(dv -> (!dv.isOutput())).size() + " inputs");
-			ObservableList<DesignVariable> inputs = pluginState.getDesignVariables().filtered(dv -> (!dv.isOutput() && !dv.getXPath().isEmpty()));
+			LOG.debug("readOutputs() " + plan.getInputs().size() + " inputs");
+			List<DesignVariable> inputs = plan.getXPathInputs();
 			LOG.debug("readOutputs() " + inputs.size() + " with XPath defined");
 			boolean ignoreWarnings = false;
 			String question = "\n\nIgnore all other warnings?\n";
@@ -307,20 +290,4 @@ public class ModelCenterPlugin extends OpenVSP3Plugin implements com.phoenix_int
 			}
 		}
 	}
-	
-	private void deleteDirectoryContents(File path) {
-		LOG.trace("deleteDirectoryContents() " + path);
-		// only needed when ModelCenterDummy quit button pressed
-		if (path.exists()) {
-			File[] files = path.listFiles();
-			for (File file : files) {
-				if (file.isDirectory()) {
-					deleteDirectoryContents(file);
-				} else {
-					file.delete();
-				}
-			}
-			path.delete();
-		}
-	}
 }
@@ -23,7 +23,7 @@ import com.phoenix_int.ModelCenter.DoubleVariable;
 import com.phoenix_int.ModelCenter.FileVariable;
 import com.phoenix_int.ModelCenter.ModelCenter;
 import com.phoenix_int.ModelCenter.ModelCenterException;
-import java.util.Map;
+import java.util.List;
 import javafx.collections.ObservableList;
 import static openvsp3plugin.OpenVSP3Plugin.CFDFILE;
 
@@ -75,7 +75,7 @@ class ModelCenterWrapper {
 		addToModel.updateComponent();
 	}
 	
-	void updateDVFromMCvalues(ObservableList<DesignVariable> dvList, PluginState pluginState) throws Exception {
+	void updateDVFromMCvalues(List<DesignVariable> dvList, PluginState pluginState) throws Exception {
 		LOG.trace("updateDVFromMCvalues()");
 		Component component = addToModel.getComponent();
 		DoubleVariable mcVariable = null;
@@ -94,7 +94,7 @@ class ModelCenterWrapper {
 		component.release();
 	}
 	
-	void readFiles(ObservableList<DesignVariable> dvList, PluginState pluginState, String tempDir) throws Exception {
+	void readFiles(List<DesignVariable> dvList, PluginState pluginState, String tempDir) throws Exception {
 		LOG.trace("readFiles()");
 		Component component = addToModel.getComponent();
 		for (DesignVariable dv : dvList) {
@@ -108,21 +108,22 @@ class ModelCenterWrapper {
 		component.release();
 	}
 	
-	void updateMCValuesFromMap(ObservableList<DesignVariable> dvList, Map<String, String> map, PluginState pluginState) throws Exception {
-		LOG.trace("updateMCValuesFromMap()");
+	/**
+	 * Sets the ModelCenter variables for dvList from values in the same order, NaN is a value that wasn't found.
+	 */
+	void updateMCValuesFromArray(List<DesignVariable> dvList, double[] values, PluginState pluginState) throws Exception {
+		LOG.trace("updateMCValuesFromArray()");
 		Component component = addToModel.getComponent();
-		for (DesignVariable dv : dvList) {
+		for (int i = 0; i < dvList.size(); i++) {
+			DesignVariable dv = dvList.get(i);
+			if (Double.isNaN(values[i])) throw new Exception("updateMCValuesFromArray() - Couldn't find " + dv.getFullName() + " in output data.");
 			DoubleVariable mcVariable = (DoubleVariable) component.getVariable(pluginState.getModelCenterName(dv));
-			if (map.containsKey(dv.getFullName())) {
-				mcVariable.setValue(Double.parseDouble(map.get(dv.getFullName())));
-			} else {
-				throw new Exception("updateMCValuesFromMap() - Couldn't find " + dv.getFullName() + " in map data.");
-			}
+			mcVariable.setValue(values[i]);
 			mcVariable.release();
 		}
 	}
 	
-	void updateMCValuesFromDV(ObservableList<DesignVariable> dvList, PluginState pluginState, XPathUtil xpu) throws Exception {
+	void updateMCValuesFromDV(List<DesignVariable> dvList, PluginState pluginState, XPathUtil xpu) throws Exception {
 		LOG.trace("updateMCValuesFromDV()");
 		Component component = addToModel.getComponent();
 		for (DesignVariable dv : dvList) {
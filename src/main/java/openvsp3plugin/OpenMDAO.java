@@ -17,25 +17,46 @@
 
 package openvsp3plugin;
 
+import java.io.BufferedWriter;
+import java.io.PrintStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The main class for running from the command line (OpenMDAO mode).
  * This creates an instance of the OpenVSP3Plugin without the ModelCenter wrapper.
  * It looks for an input file argument or the default which is "State.xml" and loads it.
  * It updates the logging level, default is INFO if flag argument is passed in.
+ * With -inputs=file it runs without a UI: the design points in the inputs csv file are evaluated
+ * and the outputs are written to the -results=file csv file (default Results.csv).
+ * With -server it runs without a UI and answers JSON lines on stdin and stdout (or a loopback socket with -server=port).
+ * With -exchange=file it runs without a UI and exchanges doubles with the caller in the memory mapped file.
  */
 public class OpenMDAO {
 	
 	// runs in OpenMDAO mode
 	public static void main(String[] args) {
+		Path inputs = null;
+		String server = null;
+		Path exchange = null;
 		try {
 			// Create OpenVSP3Plugin
 			OpenVSP3Plugin plugin = new OpenVSP3Plugin();
 			Path state = Paths.get("State.xml");
+			Path results = Paths.get("Results.csv");
 			for (String arg : args) {
-				if (arg.startsWith("-")) {
+				if (arg.startsWith("-inputs=")) {
+					inputs = Paths.get(arg.substring("-inputs=".length()));
+				} else if (arg.startsWith("-results=")) {
+					results = Paths.get(arg.substring("-results=".length()));
+				} else if (arg.startsWith("-exchange=")) {
+					exchange = Paths.get(arg.substring("-exchange=".length()));
+				} else if (arg.equals("-server") || arg.startsWith("-server=")) {
+					server = arg.substring("-server".length());
+				} else if (arg.startsWith("-")) {
 					if (arg.length() > 1) {
 						Logger.setLogLevel(arg.substring(1));
 					}
@@ -43,12 +64,111 @@ public class OpenMDAO {
 					state = Paths.get(arg);
 				}
 			}
+			// stdout is only for responses in server mode
+			PrintStream responses = System.out;
+			if ("".equals(server)) System.setOut(System.err);
 			// call initOpenVSP3Plugin after logging level has been set
 			plugin.initOpenVSP3Plugin(false);
+			// headless, Swing and the JavaFX toolkit are never started
+			if (server != null) {
+				loadState(plugin, state);
+				OpenMDAOServer openMDAOServer = new OpenMDAOServer(plugin);
+				if (server.isEmpty()) openMDAOServer.serveStandardStreams(responses);
+				else openMDAOServer.serveSocket(Integer.parseInt(server.substring(1)));
+				exit(0);
+			}
+			if (exchange != null) {
+				loadState(plugin, state);
+				new OpenMDAOExchange(plugin, exchange).serve();
+				exit(0);
+			}
+			if (inputs != null) {
+				exit(runHeadless(plugin, state, inputs, results));
+			}
 			// create the UI and load the state file if it exists
 			plugin.loadOpenMDAO(state);
 		} catch (Exception ex) {
 			System.out.println(ex.toString());
+			if ((inputs != null) || (server != null) || (exchange != null)) exit(2);
 		}
 	}
+	
+	/**
+	 * Waits for the batch directories queued for deletion before exiting, the cleaner is a daemon thread
+	 * and a directory that could not be renamed into the workspace directory would otherwise be left behind.
+	 */
+	private static void exit(int status) {
+		try {
+			OpenVSPWorkspaces.getWorkspaces().waitForCleanup();
+		} catch (Exception ex) {
+			System.err.println(ex.toString());
+		}
+		System.exit(status);
+	}
+	
+	/**
+	 * Evaluates the points in inputs with the design variables in state and writes results.
+	 * The first line of inputs is the input full names, each other line is a point, inputs that are not
+	 * in the file keep their value in state. The results have the point number, the outputs and the error.
+	 * Returns 0 if all the points were evaluated, 1 if any failed.
+	 */
+	static int runHeadless(OpenVSP3Plugin plugin, Path state, Path inputs, Path results) throws Exception {
+		loadState(plugin, state);
+		List<DesignVariable> batchInputs = plugin.getBatchInputs();
+		List<String> lines = Files.readAllLines(inputs);
+		if (lines.isEmpty()) throw new Exception("Inputs file " + inputs + " is empty");
+		String[] names = lines.get(0).split(",");
+		int[] columns = new int[names.length];
+		for (int c = 0; c < names.length; c++) {
+			columns[c] = -1;
+			for (int i = 0; i < batchInputs.size(); i++) {
+				if (batchInputs.get(i).getFullName().equals(names[c].trim())) columns[c] = i;
+			}
+			if (columns[c] < 0) throw new Exception(names[c].trim() + " is not an input in " + state);
+		}
+		double[] defaults = new double[batchInputs.size()];
+		for (int i = 0; i < defaults.length; i++) defaults[i] = Double.parseDouble(batchInputs.get(i).getValue());
+		List<double[]> points = new ArrayList<>();
+		for (int l = 1; l < lines.size(); l++) {
+			if (lines.get(l).trim().isEmpty()) continue;
+			String[] values = lines.get(l).split(",");
+			if (values.length != names.length) {
+				throw new Exception(String.format("Line %d of %s has %d values not %d", l + 1, inputs, values.length, names.length));
+			}
+			double[] point = defaults.clone();
+			for (int c = 0; c < values.length; c++) point[columns[c]] = Double.parseDouble(values[c].trim());
+			points.add(point);
+		}
+		List<OpenVSPResult> batch = plugin.runBatch(points);
+		List<DesignVariable> outputs = plugin.getPlan().getOutputs();
+		int failed = 0;
+		try (BufferedWriter bw = Files.newBufferedWriter(results)) {
+			bw.write("index");
+			for (DesignVariable dv : outputs) bw.write("," + csv(dv.getFullName()));
+			bw.write(",error");
+			bw.newLine();
+			for (OpenVSPResult result : batch) {
+				bw.write(Integer.toString(result.getIndex()));
+				for (DesignVariable dv : outputs) {
+					String value = result.isOk() ? result.getOutputs().get(dv.getFullName()) : null;
+					bw.write("," + csv((value == null) ? "" : value));
+				}
+				bw.write("," + csv(result.isOk() ? "" : result.getReason() + " " + result.getError()));
+				bw.newLine();
+				if (!result.isOk()) failed++;
+			}
+		}
+		System.out.println(String.format("%d points evaluated, %d failed, results in %s", batch.size(), failed, results));
+		return (failed == 0) ? 0 : 1;
+	}
+	
+	private static void loadState(OpenVSP3Plugin plugin, Path state) throws Exception {
+		if (!state.toFile().exists()) throw new Exception("State file " + state + " does not exist");
+		plugin.pluginState = PluginState.fromString(new String(Files.readAllBytes(state)));
+	}
+	
+	private static String csv(String value) {
+		if ((value.indexOf(',') < 0) && (value.indexOf('"') < 0) && (value.indexOf('\n') < 0)) return value;
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
 }
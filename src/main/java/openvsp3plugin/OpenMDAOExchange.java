@@ -0,0 +1,149 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package openvsp3plugin;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is the OpenMDAO shared memory mode, the caller and the plugin exchange doubles
+ * in a memory mapped file instead of text files. The layout is little endian:
+ * <pre>
+ *  0 int    magic 0x5053564F ("OVSP")
+ *  4 int    layout version 1
+ *  8 int    number of inputs
+ * 12 int    number of outputs
+ * 16 long   request number, the caller writes the inputs then increments it (the doorbell), -1 stops the plugin
+ * 24 long   response number, the plugin sets it to the request number after writing the outputs
+ * 32 int    status of the response, 0 ok otherwise the OpenVSPFailure.Reason ordinal + 1
+ * 36 int    offset of the names
+ * 40 int    offset of the inputs
+ * 44 int    offset of the outputs
+ * 48 int    length in bytes of the names
+ * inputs    a double for each input in des file order
+ * outputs   a double for each output that is not a File output, NaN if the run failed or it is not a number
+ * names     UTF-8 full names of the inputs then the outputs, one per line
+ * </pre>
+ */
+class OpenMDAOExchange {
+
+	static final int MAGIC = 0x5053564F;
+	static final int LAYOUT = 1;
+	static final int HEADER = 64;
+	private static final Logger LOG = new Logger(OpenMDAOExchange.class.getSimpleName());
+	private static final long POLLMILLIS = 1;
+	private final OpenVSP3Plugin plugin;
+	private final Path path;
+	private final List<DesignVariable> batchInputs;
+	private final List<DesignVariable> inputs;
+	private final List<DesignVariable> outputs = new ArrayList<>();
+	private final int[] batchIndex;
+	private final int[] outputIndex;
+
+	/**
+	 * The plugin state must be loaded.
+	 */
+	OpenMDAOExchange(OpenVSP3Plugin plugin, Path path) {
+		this.plugin = plugin;
+		this.path = path;
+		this.batchInputs = plugin.getBatchInputs();
+		this.inputs = plugin.getPlan().getDesInputs();
+		batchIndex = new int[inputs.size()];
+		for (int i = 0; i < inputs.size(); i++) batchIndex[i] = batchInputs.indexOf(inputs.get(i));
+		AnalysisPlan plan = plugin.getPlan();
+		for (DesignVariable dv : plan.getOutputs()) {
+			String id = dv.getId();
+			if (!id.equals(OpenVSP3Plugin.FILE) && !id.equals(OpenVSP3Plugin.CFDFILE)) outputs.add(dv);
+		}
+		outputIndex = new int[outputs.size()];
+		for (int i = 0; i < outputs.size(); i++) outputIndex[i] = plan.getOutputIndex(outputs.get(i));
+	}
+
+	/**
+	 * Writes the layout to the file and answers requests until the caller writes -1.
+	 */
+	void serve() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (DesignVariable dv : inputs) sb.append(dv.getFullName()).append('\n');
+		for (DesignVariable dv : outputs) sb.append(dv.getFullName()).append('\n');
+		byte[] names = sb.toString().getBytes(StandardCharsets.UTF_8);
+		int inputsOffset = HEADER;
+		int outputsOffset = inputsOffset + 8 * inputs.size();
+		int namesOffset = outputsOffset + 8 * outputs.size();
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			file.setLength(0);
+			file.setLength(namesOffset + names.length);
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, namesOffset + names.length);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(8, inputs.size());
+			buffer.putInt(12, outputs.size());
+			buffer.putLong(16, 0);
+			buffer.putLong(24, 0);
+			buffer.putInt(32, 0);
+			buffer.putInt(36, namesOffset);
+			buffer.putInt(40, inputsOffset);
+			buffer.putInt(44, outputsOffset);
+			buffer.putInt(48, names.length);
+			for (int i = 0; i < inputs.size(); i++) buffer.putDouble(inputsOffset + 8 * i, Double.parseDouble(inputs.get(i).getValue()));
+			for (int i = 0; i < outputs.size(); i++) buffer.putDouble(outputsOffset + 8 * i, Double.NaN);
+			for (int i = 0; i < names.length; i++) buffer.put(namesOffset + i, names[i]);
+			buffer.putInt(4, LAYOUT);
+			// the magic number is written last so a caller that sees it sees the whole layout
+			buffer.putInt(0, MAGIC);
+			buffer.force();
+			LOG.info(String.format("serve() - %s %d inputs %d outputs", path, inputs.size(), outputs.size()));
+			long answered = 0;
+			while (true) {
+				long request = buffer.getLong(16);
+				if (request == -1) break;
+				if (request == answered) {
+					Thread.sleep(POLLMILLIS);
+					continue;
+				}
+				double[] point = new double[batchInputs.size()];
+				for (int i = 0; i < inputs.size(); i++) point[batchIndex[i]] = buffer.getDouble(inputsOffset + 8 * i);
+				List<double[]> points = new ArrayList<>();
+				points.add(point);
+				int status = 0;
+				double[] values = null;
+				try {
+					// the outputs stay numbers from the readers to the buffer
+					OpenVSPResult result = plugin.runBatch(points, true).get(0);
+					if (result.isOk()) values = result.getValues();
+					else status = result.getReason().ordinal() + 1;
+				} catch (Exception ex) {
+					LOG.warn("serve() - " + ex.toString());
+					status = OpenVSPFailure.getReason(ex).ordinal() + 1;
+				}
+				for (int i = 0; i < outputs.size(); i++) {
+					buffer.putDouble(outputsOffset + 8 * i, (values == null) ? Double.NaN : values[outputIndex[i]]);
+				}
+				buffer.putInt(32, status);
+				// the response number is written last so the caller only reads complete outputs
+				buffer.putLong(24, request);
+				answered = request;
+			}
+			LOG.info("serve() - stopped by the caller");
+		}
+	}
+}
@@ -0,0 +1,473 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package openvsp3plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is the OpenMDAO server mode, the plugin state is loaded once and each request line
+ * is answered with a response line, both are JSON objects. The requests are
+ * {"id": 1, "inputs": {"Wing:XSec_1:Span": 4.0}} one design point, inputs that are left out keep their state value
+ * {"id": 2, "points": [{...}, {...}]} several design points run as a batch
+ * {"id": 3, "command": "describe"} the input values and the output names
+ * {"id": 4, "command": "shutdown"} stops the server
+ * and the response has the same id with "outputs" (numbers, or strings for file paths), "results" for points,
+ * or "error" and "reason" if the evaluation failed. Requests are answered on serverThreads threads
+ * so responses can be in a different order than the requests.
+ */
+class OpenMDAOServer {
+
+	private static final Logger LOG = new Logger(OpenMDAOServer.class.getSimpleName());
+	private static Integer serverThreads = Integer.getInteger("OpenVSP3Plugin.serverThreads", Runtime.getRuntime().availableProcessors());
+	private final OpenVSP3Plugin plugin;
+	private final List<DesignVariable> inputs;
+	private final List<DesignVariable> outputs;
+	private final ExecutorService executor;
+	private volatile boolean shutdown = false;
+
+	public static void setServerThreads(Integer serverThreads) {
+		OpenMDAOServer.serverThreads = serverThreads;
+	}
+
+	/**
+	 * The plugin state must be loaded.
+	 */
+	OpenMDAOServer(OpenVSP3Plugin plugin) {
+		this.plugin = plugin;
+		this.inputs = plugin.getBatchInputs();
+		this.outputs = plugin.getPlan().getOutputs();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, serverThreads), runnable -> {
+			Thread thread = new Thread(runnable, "OpenMDAOServer request");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Answers the requests on stdin on out until stdin is closed,
+	 * out is the original stdout because the log must be moved to stderr before anything is logged.
+	 */
+	void serveStandardStreams(PrintStream out) throws Exception {
+		serve(System.in, out);
+		finish();
+	}
+
+	/**
+	 * Answers each connection to port on the loopback address until a shutdown request,
+	 * port 0 picks a free port, the port is written to stdout as {"port": n}.
+	 */
+	void serveSocket(int port) throws Exception {
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			System.out.println("{\"port\": " + server.getLocalPort() + "}");
+			System.out.flush();
+			while (!shutdown) {
+				Socket socket = server.accept();
+				Thread thread = new Thread(() -> {
+					try (Socket s = socket) {
+						serve(s.getInputStream(), s.getOutputStream());
+					} catch (Exception ex) {
+						LOG.warn("serveSocket() - " + ex.toString());
+					}
+					// wake up accept() so the server sees the shutdown
+					if (shutdown) closeQuietly(server);
+				}, "OpenMDAOServer connection");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		} catch (IOException ex) {
+			if (!shutdown) throw ex;
+		}
+		finish();
+	}
+
+	/**
+	 * Waits for the requests that are running.
+	 */
+	private void finish() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	private static void closeQuietly(ServerSocket server) {
+		try {
+			server.close();
+		} catch (IOException ex) {
+			LOG.debug("closeQuietly() - " + ex.toString());
+		}
+	}
+
+	/**
+	 * Answers the requests in until it ends or a shutdown request, then waits for the requests
+	 * of this connection that are still running so their responses are written before out is closed.
+	 */
+	private void serve(InputStream in, OutputStream out) throws Exception {
+		BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		List<Future<?>> running = new ArrayList<>();
+		String line;
+		while (!shutdown && ((line = br.readLine()) != null)) {
+			if (line.trim().isEmpty()) continue;
+			Map<String, Object> request;
+			try {
+				request = asMap(new JsonParser(line).parse());
+			} catch (Exception ex) {
+				respond(bw, getError(null, ex));
+				continue;
+			}
+			if ("shutdown".equals(request.get("command"))) {
+				LOG.info("serve() - shutdown");
+				shutdown = true;
+				respond(bw, answer(request));
+			} else {
+				running.removeIf(Future::isDone);
+				running.add(executor.submit(() -> respond(bw, answer(request))));
+			}
+		}
+		for (Future<?> future : running) {
+			try {
+				future.get();
+			} catch (ExecutionException ex) {
+				LOG.warn("serve() - " + ex.getCause());
+			}
+		}
+	}
+
+	private static void respond(BufferedWriter bw, String response) {
+		synchronized (bw) {
+			try {
+				bw.write(response);
+				bw.newLine();
+				bw.flush();
+			} catch (IOException ex) {
+				LOG.warn("respond() - " + ex.toString());
+			}
+		}
+	}
+
+	/**
+	 * Returns the response line for a request.
+	 */
+	String answer(Map<String, Object> map) {
+		Object id = (map == null) ? null : map.get("id");
+		try {
+			if (map == null) throw new Exception("Expected a JSON object");
+			Map<String, Object> response = new LinkedHashMap<>();
+			response.put("id", id);
+			Object command = map.get("command");
+			if ("describe".equals(command)) {
+				Map<String, Object> values = new LinkedHashMap<>();
+				for (DesignVariable dv : inputs) values.put(dv.getFullName(), toValue(dv.getValue()));
+				List<Object> names = new ArrayList<>();
+				for (DesignVariable dv : outputs) names.add(dv.getFullName());
+				response.put("inputs", values);
+				response.put("outputs", names);
+			} else if ("shutdown".equals(command)) {
+				response.put("shutdown", Boolean.TRUE);
+			} else if (command != null) {
+				throw new Exception("Unknown command " + command);
+			} else if (map.containsKey("points")) {
+				List<double[]> points = new ArrayList<>();
+				for (Object point : asList(map.get("points"))) points.add(getPoint(asMap(point)));
+				List<Object> results = new ArrayList<>();
+				for (OpenVSPResult result : plugin.runBatch(points)) {
+					Map<String, Object> r = new LinkedHashMap<>();
+					putResult(r, result);
+					results.add(r);
+				}
+				response.put("results", results);
+			} else {
+				List<double[]> points = new ArrayList<>();
+				points.add(getPoint(asMap(map.get("inputs"))));
+				putResult(response, plugin.runBatch(points).get(0));
+			}
+			return toJson(response);
+		} catch (Exception ex) {
+			return getError(id, ex);
+		}
+	}
+
+	private static String getError(Object id, Exception ex) {
+		Map<String, Object> response = new LinkedHashMap<>();
+		response.put("id", id);
+		response.put("error", ex.toString());
+		response.put("reason", OpenVSPFailure.getReason(ex).toString());
+		return toJson(response);
+	}
+
+	private double[] getPoint(Map<String, Object> values) throws Exception {
+		double[] point = new double[inputs.size()];
+		for (int i = 0; i < point.length; i++) point[i] = Double.parseDouble(inputs.get(i).getValue());
+		if (values == null) return point;
+		for (Map.Entry<String, Object> entry : values.entrySet()) {
+			int index = -1;
+			for (int i = 0; i < inputs.size(); i++) {
+				if (inputs.get(i).getFullName().equals(entry.getKey())) index = i;
+			}
+			if (index < 0) throw new Exception(entry.getKey() + " is not an input");
+			if (!(entry.getValue() instanceof Double)) throw new Exception(entry.getKey() + " is not a number");
+			point[index] = (Double) entry.getValue();
+		}
+		return point;
+	}
+
+	private void putResult(Map<String, Object> response, OpenVSPResult result) {
+		if (result.isOk()) {
+			Map<String, Object> values = new LinkedHashMap<>();
+			for (DesignVariable dv : outputs) values.put(dv.getFullName(), toValue(result.getOutputs().get(dv.getFullName())));
+			response.put("outputs", values);
+		} else {
+			response.put("error", result.getError());
+			response.put("reason", result.getReason().toString());
+			if (result.getOutput() != null) response.put("output", result.getOutput());
+		}
+	}
+
+	/**
+	 * Returns value as a Double if it is a number so it is written without quotes.
+	 */
+	private static Object toValue(String value) {
+		if (value == null) return null;
+		try {
+			return Double.valueOf(value);
+		} catch (NumberFormatException ex) {
+			return value;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> asMap(Object value) throws Exception {
+		if ((value != null) && !(value instanceof Map)) throw new Exception("Expected a JSON object");
+		return (Map<String, Object>) value;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> asList(Object value) throws Exception {
+		if (!(value instanceof List)) throw new Exception("Expected a JSON array");
+		return (List<Object>) value;
+	}
+
+	static String toJson(Object value) {
+		StringBuilder sb = new StringBuilder();
+		appendJson(sb, value);
+		return sb.toString();
+	}
+
+	private static void appendJson(StringBuilder sb, Object value) {
+		if (value == null) {
+			sb.append("null");
+		} else if (value instanceof Double) {
+			double d = (Double) value;
+			if (Double.isNaN(d) || Double.isInfinite(d)) sb.append("null");
+			else if ((d == Math.rint(d)) && (Math.abs(d) < 1e15)) sb.append((long) d);
+			else sb.append(value);
+		} else if ((value instanceof Number) || (value instanceof Boolean)) {
+			sb.append(value);
+		} else if (value instanceof Map) {
+			sb.append('{');
+			boolean first = true;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (!first) sb.append(", ");
+				first = false;
+				appendJson(sb, entry.getKey().toString());
+				sb.append(": ");
+				appendJson(sb, entry.getValue());
+			}
+			sb.append('}');
+		} else if (value instanceof List) {
+			sb.append('[');
+			boolean first = true;
+			for (Object item : (List<?>) value) {
+				if (!first) sb.append(", ");
+				first = false;
+				appendJson(sb, item);
+			}
+			sb.append(']');
+		} else {
+			String s = value.toString();
+			sb.append('"');
+			for (int i = 0; i < s.length(); i++) {
+				char ch = s.charAt(i);
+				switch (ch) {
+					case '"': sb.append("\\\""); break;
+					case '\\': sb.append("\\\\"); break;
+					case '\n': sb.append("\\n"); break;
+					case '\r': sb.append("\\r"); break;
+					case '\t': sb.append("\\t"); break;
+					default:
+						if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+						else sb.append(ch);
+				}
+			}
+			sb.append('"');
+		}
+	}
+
+	/**
+	 * Parses one JSON value into Map, List, String, Double, Boolean or null.
+	 */
+	static class JsonParser {
+
+		private final String text;
+		private int position = 0;
+
+		JsonParser(String text) {
+			this.text = text;
+		}
+
+		Object parse() throws Exception {
+			Object value = parseValue();
+			skipSpace();
+			if (position < text.length()) throw error("Unexpected text");
+			return value;
+		}
+
+		private Object parseValue() throws Exception {
+			skipSpace();
+			if (position >= text.length()) throw error("Unexpected end");
+			char ch = text.charAt(position);
+			switch (ch) {
+				case '{': return parseObject();
+				case '[': return parseArray();
+				case '"': return parseString();
+				case 't': return parseWord("true", Boolean.TRUE);
+				case 'f': return parseWord("false", Boolean.FALSE);
+				case 'n': return parseWord("null", null);
+				default: return parseNumber();
+			}
+		}
+
+		private Map<String, Object> parseObject() throws Exception {
+			Map<String, Object> map = new LinkedHashMap<>();
+			position++;
+			skipSpace();
+			if (peek() == '}') {
+				position++;
+				return map;
+			}
+			while (true) {
+				skipSpace();
+				if (peek() != '"') throw error("Expected a name");
+				String name = parseString();
+				skipSpace();
+				if (peek() != ':') throw error("Expected :");
+				position++;
+				map.put(name, parseValue());
+				skipSpace();
+				char ch = peek();
+				position++;
+				if (ch == '}') return map;
+				if (ch != ',') throw error("Expected , or }");
+			}
+		}
+
+		private List<Object> parseArray() throws Exception {
+			List<Object> list = new ArrayList<>();
+			position++;
+			skipSpace();
+			if (peek() == ']') {
+				position++;
+				return list;
+			}
+			while (true) {
+				list.add(parseValue());
+				skipSpace();
+				char ch = peek();
+				position++;
+				if (ch == ']') return list;
+				if (ch != ',') throw error("Expected , or ]");
+			}
+		}
+
+		private String parseString() throws Exception {
+			StringBuilder sb = new StringBuilder();
+			position++;
+			while (position < text.length()) {
+				char ch = text.charAt(position++);
+				if (ch == '"') return sb.toString();
+				if (ch != '\\') {
+					sb.append(ch);
+					continue;
+				}
+				if (position >= text.length()) break;
+				char escape = text.charAt(position++);
+				switch (escape) {
+					case 'b': sb.append('\b'); break;
+					case 'f': sb.append('\f'); break;
+					case 'n': sb.append('\n'); break;
+					case 'r': sb.append('\r'); break;
+					case 't': sb.append('\t'); break;
+					case 'u':
+						if (position + 4 > text.length()) throw error("Bad escape");
+						sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+						position += 4;
+						break;
+					default: sb.append(escape);
+				}
+			}
+			throw error("Unterminated string");
+		}
+
+		private Object parseWord(String word, Object value) throws Exception {
+			if (!text.startsWith(word, position)) throw error("Unexpected text");
+			position += word.length();
+			return value;
+		}
+
+		private Double parseNumber() throws Exception {
+			int start = position;
+			while ((position < text.length()) && ("+-0123456789.eE".indexOf(text.charAt(position)) >= 0)) position++;
+			if (start == position) throw error("Unexpected character");
+			try {
+				return Double.valueOf(text.substring(start, position));
+			} catch (NumberFormatException ex) {
+				throw error("Bad number");
+			}
+		}
+
+		private char peek() {
+			return (position < text.length()) ? text.charAt(position) : 0;
+		}
+
+		private void skipSpace() {
+			while ((position < text.length()) && Character.isWhitespace(text.charAt(position))) position++;
+		}
+
+		private Exception error(String message) {
+			return new Exception(String.format("JSON %s at %d", message, position));
+		}
+	}
+}
@@ -21,12 +21,18 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javafx.collections.ObservableList;
 import javafx.scene.control.TreeItem;
 import static openvsp3plugin.OpenVSP3Plugin.CFDEXPORTS;
+import static openvsp3plugin.OpenVSP3Plugin.DEGENGEOM;
+import static openvsp3plugin.OpenVSP3Plugin.DEGENGEOMVALUES;
 import static openvsp3plugin.OpenVSP3Plugin.CFDFILE;
 import static openvsp3plugin.OpenVSP3Plugin.COMPGEOM;
 import static openvsp3plugin.OpenVSP3Plugin.COMPGEOM2;
@@ -34,6 +40,9 @@ import static openvsp3plugin.OpenVSP3Plugin.EXPORTS;
 import static openvsp3plugin.OpenVSP3Plugin.FILE;
 import static openvsp3plugin.OpenVSP3Plugin.MASSPROP;
 import static openvsp3plugin.OpenVSP3Plugin.MASSPROPVALUES;
+import static openvsp3plugin.OpenVSP3Plugin.MESH;
+import static openvsp3plugin.OpenVSP3Plugin.MESHFORMATS;
+import static openvsp3plugin.OpenVSP3Plugin.MESHVALUES;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -48,11 +57,63 @@ public class OpenVSP3File {
 	public static final String[] SUBSURFACES = {"SubSurface", "SS_Rectangle", "SS_Ellipse", "SS_Control"};
 	public static final String[] CHOICEVECTOR = {"Aspect", "Span", "Area", "Taper", "Avg_Chord", "Root_Chord", "Tip_Chord", "Sec_Sweep"};
 	
-	private static final String USERPARMPATH = "/Vsp_Geometry/UserParmContainer/UserParm";
-	private static final String GEOMETRYPATH = "/Vsp_Geometry/Vehicle/Geom";
-	private static final String FUSEGEOMPATH = "FuselageGeom/XSecSurf/XSec";
-	private static final String WINGGEOMPATH = "WingGeom/XSecSurf/XSec";
-	private static final String PROPGEOMPATH = "PropellerGeom/XSecSurf/XSec";
+	static final String USERPARMPATH = "/Vsp_Geometry/UserParmContainer/UserParm";
+	static final String GEOMETRYPATH = "/Vsp_Geometry/Vehicle/Geom";
+	static final String FUSEGEOMPATH = "FuselageGeom/XSecSurf/XSec";
+	static final String WINGGEOMPATH = "WingGeom/XSecSurf/XSec";
+	static final String PROPGEOMPATH = "PropellerGeom/XSecSurf/XSec";
+	private static final String[] PROPCURVES = {"Chord", "Rake", "Skew", "Twist"};
+	private static final Logger LOG = new Logger(OpenVSP3File.class.getSimpleName());
+
+	private static Boolean useDOMParser = Boolean.getBoolean("OpenVSP3Plugin.useDOMParser");
+
+	public static void setUseDOMParser(Boolean value) {
+		useDOMParser = value;
+	}
+	
+	private static String snapshotDirectory = System.getProperty("OpenVSP3Plugin.snapshotDirectory");
+
+	/**
+	 * Parsed files are saved to and loaded from snapshots in this directory, null turns the snapshots off.
+	 */
+	public static void setSnapshotDirectory(String value) {
+		snapshotDirectory = value;
+	}
+	
+	private static Boolean parallelRead = Boolean.getBoolean("OpenVSP3Plugin.parallelRead");
+
+	public static void setParallelRead(Boolean value) {
+		parallelRead = value;
+	}
+	
+	/**
+	 * Builds the container for one parsed Geom, prefix is the Geom xpath with a trailing "/".
+	 */
+	interface GeomContainerBuilder<T> {
+		TreeItem<DesignVariableGroup> build(T geom, String prefix) throws Exception;
+	}
+	
+	/**
+	 * A design variable built on a pool thread, it is checked and added when the Geoms are merged.
+	 */
+	private static class DeferredDesignVariable {
+		final TreeItem<DesignVariableGroup> container;
+		final TreeItem<DesignVariableGroup> group;
+		final DesignVariable dv;
+		boolean add; // false if it is hidden or failed the invalid character check
+
+		DeferredDesignVariable(TreeItem<DesignVariableGroup> container, TreeItem<DesignVariableGroup> group, DesignVariable dv) {
+			this.container = container;
+			this.group = group;
+			this.dv = dv;
+		}
+	}
+	
+	private static class GeomResult {
+		final List<DeferredDesignVariable> designVariables = new ArrayList<>();
+		TreeItem<DesignVariableGroup> container;
+		Exception exception;
+	}
 
 	private XPathUtil xpu;
 	private final boolean addID;
@@ -60,6 +121,18 @@ public class OpenVSP3File {
 	private final ArrayList<Integer> nSyms = new ArrayList<>();
 	// pass in from controller so it can add a callback = FXCollections.observableArrayList();
 	private final ObservableList<DesignVariable> designVariables;
+	// full name index of designVariables, the observable list is only added to here
+	private final Map<String, DesignVariable> designVariableMap = new HashMap<>();
+	// set while a Geom is built on a pool thread
+	private final ThreadLocal<List<DeferredDesignVariable>> deferred = new ThreadLocal<>();
+	// streaming reader Geom keys (xpath prefix + digest) and their containers, empty after a DOM read
+	private final ArrayList<String> geomKeys = new ArrayList<>();
+	private final ArrayList<TreeItem<DesignVariableGroup>> geomContainers = new ArrayList<>();
+	// only set during reload()
+	private Map<String, TreeItem<DesignVariableGroup>> previousGeomContainers = null;
+	// set by reload() until the next read() so updateCompGeom() after a reload keeps the state too
+	private Map<String, DesignVariable> previousDesignVariables = null;
+	private int builtGeoms = 0;
 	private final ArrayList<TreeItem<DesignVariableGroup>> containerArrayList = new ArrayList<>();
 	private final TreeItem<DesignVariableGroup> compGeomContainer = new TreeItem<>(new DesignVariableGroup(COMPGEOM));
 	private final TreeItem<DesignVariableGroup> compGeom2Container = new TreeItem<>(new DesignVariableGroup(COMPGEOM2));
@@ -80,11 +153,88 @@ public class OpenVSP3File {
 		return containerArrayList;
 	}
 	
+	ArrayList<Integer> getNSyms() {
+		return nSyms;
+	}
+	
+	/**
+	 * Returns the design variable with the full name (container:group:name) or null.
+	 */
+	public DesignVariable getDesignVariable(String fullName) {
+		return designVariableMap.get(fullName);
+	}
+	
+	ArrayList<String> getGeomKeys() {
+		return geomKeys;
+	}
+	
+	/**
+	 * Called by the snapshot after the containers are added, the Geom containers follow the UserParms container.
+	 */
+	void setGeomKeys(List<String> keys) {
+		geomKeys.clear();
+		geomKeys.addAll(keys);
+		geomContainers.clear();
+		geomContainers.addAll(containerArrayList.subList(1, keys.size() + 1));
+	}
+	
+	/**
+	 * The streaming reader is the default, the DOM/XPath reader is kept to compare results.
+	 * If there is a snapshot of the same file it is loaded instead.
+	 */
 	public void read(File file) throws Exception {
+		previousDesignVariables = null;
+		read(file, true);
+	}
+	
+	/**
+	 * Reads a new version of the loaded file, e.g. after it was saved in OpenVSP.
+	 * Geom containers whose streaming reader key is unchanged are reused with their design variables,
+	 * so their checked state, state and value are kept. The other design variables are new and take
+	 * the checked state and state of the previous design variable with the same full name, and its
+	 * value if the vsp value did not change.
+	 * Returns false if the Geom containers are all reused, so CompGeom does not need to run again.
+	 */
+	public boolean reload(File file) throws Exception {
+		previousGeomContainers = new HashMap<>();
+		for (int i = 0; i < geomKeys.size(); i++) {
+			previousGeomContainers.put(geomKeys.get(i), geomContainers.get(i));
+		}
+		previousDesignVariables = new HashMap<>(designVariableMap);
+		int previousGeoms = geomKeys.size();
+		setNames.clear();
+		containerArrayList.clear();
+		try {
+			read(file, false);
+		} finally {
+			previousGeomContainers = null;
+		}
+		LOG.debug(String.format("reload() built %d of %d Geom containers", builtGeoms, geomKeys.size()));
+		return geomKeys.isEmpty() || (geomKeys.size() != previousGeoms) || (builtGeoms > 0);
+	}
+	
+	private void read(File file, boolean useSnapshot) throws Exception {
+		long start = System.nanoTime();
 		designVariables.clear();
-		xpu = new XPathUtil(file);
-		loadSetNames();
-		loadContainerArrayList();
+		designVariableMap.clear();
+		nSyms.clear();
+		geomKeys.clear();
+		geomContainers.clear();
+		builtGeoms = 0;
+		OpenVSP3Snapshot snapshot = (!useSnapshot || (snapshotDirectory == null)) ? null : new OpenVSP3Snapshot(this, new File(snapshotDirectory), file, addID);
+		if ((snapshot == null) || !snapshot.read()) {
+			if (useDOMParser) {
+				xpu = new XPathUtil(file);
+				loadSetNames();
+				loadContainerArrayList();
+				LOG.debug("read() " + xpu.getCacheStatistics());
+			} else {
+				new OpenVSP3StreamReader(this).read(file);
+			}
+			if (snapshot != null) snapshot.write(designVariables);
+		}
+		addOutputContainers();
+		LOG.debug(String.format("read() %d design variables in %.1f ms", designVariables.size(), (System.nanoTime() - start) / 1e6));
 	}
 	
 	private void loadSetNames() {
@@ -96,16 +246,89 @@ public class OpenVSP3File {
 	
 	private void loadContainerArrayList() throws Exception {
 		containerArrayList.add(getUserParmContainer());
-		nSyms.clear();
-		int nGeoms = xpu.getElementNodes(GEOMETRYPATH).getLength();
-		for (int i = 1; i <= nGeoms; i++) {
-			containerArrayList.add(getGeomContainer(GEOMETRYPATH + "[" + i + "]/"));
+		// each Geom node is visited once and searched relative to itself
+		NodeList geoms = xpu.getElementNodes(GEOMETRYPATH);
+		for (int i = 1; i <= geoms.getLength(); i++) {
+			containerArrayList.add(getGeomContainer(geoms.item(i - 1), GEOMETRYPATH + "[" + i + "]/"));
 		}
 		addTopLevelContainers();
+		for (int i = 0; i < geoms.getLength(); i++) {
+			nSyms.add(getNSym(geoms.item(i)));
+		}
+	}
+	
+	/**
+	 * Adds a container per Geom to containerArrayList in Geom order, keys has a digest per Geom.
+	 * During reload() a Geom with the same xpath and digest as before reuses the previous container.
+	 * With parallelRead the Geoms are built on the common ForkJoinPool and their design variables
+	 * are checked and added here afterwards, so the result and any naming error are the same as building in order.
+	 */
+	<T> void addGeomContainers(List<T> geoms, List<String> keys, GeomContainerBuilder<T> builder) throws Exception {
+		boolean parallel = parallelRead && (geoms.size() > 1);
+		List<TreeItem<DesignVariableGroup>> reused = new ArrayList<>();
+		List<ForkJoinTask<GeomResult>> tasks = new ArrayList<>();
+		for (int i = 1; i <= geoms.size(); i++) {
+			T geom = geoms.get(i - 1);
+			String prefix = GEOMETRYPATH + "[" + i + "]/";
+			TreeItem<DesignVariableGroup> container = (previousGeomContainers == null) ? null : previousGeomContainers.get(prefix + keys.get(i - 1));
+			reused.add(container);
+			tasks.add(((container != null) || !parallel) ? null : ForkJoinPool.commonPool().submit(() -> {
+				GeomResult result = new GeomResult();
+				deferred.set(result.designVariables);
+				try {
+					result.container = builder.build(geom, prefix);
+				} catch (Exception ex) {
+					result.exception = ex;
+				} finally {
+					deferred.remove();
+				}
+				return result;
+			}));
+		}
+		try {
+			for (int i = 1; i <= geoms.size(); i++) {
+				String prefix = GEOMETRYPATH + "[" + i + "]/";
+				TreeItem<DesignVariableGroup> container = reused.get(i - 1);
+				ForkJoinTask<GeomResult> task = tasks.get(i - 1);
+				if (container != null) {
+					for (DesignVariable dv : container.getValue().getDesignVariables()) {
+						checkFullName(dv);
+						registerDesignVariable(dv);
+					}
+				} else if (task != null) {
+					GeomResult result = task.join();
+					for (DeferredDesignVariable ddv : result.designVariables) {
+						checkFullName(ddv.dv);
+						if (ddv.add) addDesignVariable(ddv.container, ddv.group, ddv.dv);
+					}
+					if (result.exception != null) throw result.exception;
+					container = result.container;
+				} else {
+					container = builder.build(geoms.get(i - 1), prefix);
+				}
+				if (reused.get(i - 1) == null) builtGeoms++;
+				containerArrayList.add(container);
+				geomKeys.add(prefix + keys.get(i - 1));
+				geomContainers.add(container);
+			}
+		} finally {
+			for (ForkJoinTask<GeomResult> task : tasks) {
+				if (task != null) task.cancel(false);
+			}
+		}
+	}
+	
+	/**
+	 * Called after the parser has added the UserParms, Geom and top level containers
+	 * and one nSyms entry per Geom.
+	 */
+	private void addOutputContainers() throws Exception {
 		containerArrayList.add(getFileContainer());
 		containerArrayList.add(compGeomContainer);
 		containerArrayList.add(compGeom2Container);
-		containerArrayList.add(getMassPropsContainer(nGeoms));
+		containerArrayList.add(getMassPropsContainer());
+		containerArrayList.add(getDegenGeomContainer());
+		containerArrayList.add(getMeshContainer());
 	}
 	
 	private TreeItem<DesignVariableGroup> getUserParmContainer() throws Exception {
@@ -134,52 +357,57 @@ public class OpenVSP3File {
 		return container;
 	}
 	
-	private TreeItem<DesignVariableGroup> getGeomContainer(String prefix) throws Exception {
-		TreeItem<DesignVariableGroup> container = getContainer(prefix + "ParmContainer");
-		int type = xpu.getInteger(prefix + "GeomBase/TypeID");
+	private TreeItem<DesignVariableGroup> getGeomContainer(Node geom, String prefix) throws Exception {
+		// prefix is only used for the design variable xpath
+		TreeItem<DesignVariableGroup> container = getContainer(XPathUtil.getChildElement(geom, "ParmContainer"), prefix + "ParmContainer");
+		int type = XPathUtil.parseInteger(XPathUtil.getChildText(geom, "GeomBase/TypeID"));
+		List<Node> xsecs;
 		switch (type) {
 			case 4: // fuselage
 			case 8: // stack
-				addGroups(container, prefix + FUSEGEOMPATH, "Cap", "XSec/XSecCurve/ParmContainer/Cap", 1);
-				addGroups(container, prefix + FUSEGEOMPATH, "Close", "XSec/XSecCurve/ParmContainer/Close", 1);
-				addGroups(container, prefix + FUSEGEOMPATH, "Trim", "XSec/XSecCurve/ParmContainer/Trim", 1);
-				addGroups(container, prefix + FUSEGEOMPATH, "XSecCurve", "XSec/XSecCurve/ParmContainer/XSecCurve", 1);
-				addGroups(container, prefix + FUSEGEOMPATH, "XSec", "ParmContainer/XSec", 1);
+				xsecs = XPathUtil.getChildElements(geom, FUSEGEOMPATH);
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "Cap", "XSec/XSecCurve/ParmContainer/Cap", 1);
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "Close", "XSec/XSecCurve/ParmContainer/Close", 1);
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "Trim", "XSec/XSecCurve/ParmContainer/Trim", 1);
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "XSecCurve", "XSec/XSecCurve/ParmContainer/XSecCurve", 1);
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "XSec", "ParmContainer/XSec", 1);
 				break;
 			case 5: // wing
-				addGroups(container, prefix + WINGGEOMPATH, "Cap", "XSec/XSecCurve/ParmContainer/Cap", 1);
-				addGroups(container, prefix + WINGGEOMPATH, "Close", "XSec/XSecCurve/ParmContainer/Close", 1);
-				addGroups(container, prefix + WINGGEOMPATH, "LowerCoeff", "XSec/XSecCurve/ParmContainer/LowerCoeff", 1);
-				addGroups(container, prefix + WINGGEOMPATH, "Trim", "XSec/XSecCurve/ParmContainer/Trim", 1);
-				addGroups(container, prefix + WINGGEOMPATH, "UpperCoeff", "XSec/XSecCurve/ParmContainer/UpperCoeff", 1);
-				addGroups(container, prefix + WINGGEOMPATH, "XSecCurve", "XSec/XSecCurve/ParmContainer/XSecCurve", 1);
-				addWingSections(container, prefix + WINGGEOMPATH, "XSec", "ParmContainer/XSec", 1);
+				xsecs = XPathUtil.getChildElements(geom, WINGGEOMPATH);
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "Cap", "XSec/XSecCurve/ParmContainer/Cap", 1);
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "Close", "XSec/XSecCurve/ParmContainer/Close", 1);
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "LowerCoeff", "XSec/XSecCurve/ParmContainer/LowerCoeff", 1);
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "Trim", "XSec/XSecCurve/ParmContainer/Trim", 1);
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "UpperCoeff", "XSec/XSecCurve/ParmContainer/UpperCoeff", 1);
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "XSecCurve", "XSec/XSecCurve/ParmContainer/XSecCurve", 1);
+				addWingSections(container, xsecs, prefix + WINGGEOMPATH, "XSec", "ParmContainer/XSec", 1);
 				break;
 			case 11:
-				addGroup(container, prefix + "PropellerGeom/Chord/ParmContainer/Chord");
-				addGroup(container, prefix + "PropellerGeom/Rake/ParmContainer/Rake");
-				addGroup(container, prefix + "PropellerGeom/Skew/ParmContainer/Skew");
-				addGroup(container, prefix + "PropellerGeom/Twist/ParmContainer/Twist");
-				addGroups(container, prefix + PROPGEOMPATH, "Cap", "XSec/XSecCurve/ParmContainer/Cap", 1);
-				addGroups(container, prefix + PROPGEOMPATH, "Close", "XSec/XSecCurve/ParmContainer/Close", 1);
-				addGroups(container, prefix + PROPGEOMPATH, "Trim", "XSec/XSecCurve/ParmContainer/Trim", 1);
-				addGroups(container, prefix + PROPGEOMPATH, "XSecCurve", "XSec/XSecCurve/ParmContainer/XSecCurve", 1);
-				addGroups(container, prefix + PROPGEOMPATH, "XSec", "ParmContainer/XSec", 1);
+				for (String curve : PROPCURVES) {
+					String path = "PropellerGeom/" + curve + "/ParmContainer/" + curve;
+					addGroup(container, XPathUtil.getChildElement(geom, path), prefix + path);
+				}
+				xsecs = XPathUtil.getChildElements(geom, PROPGEOMPATH);
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "Cap", "XSec/XSecCurve/ParmContainer/Cap", 1);
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "Close", "XSec/XSecCurve/ParmContainer/Close", 1);
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "Trim", "XSec/XSecCurve/ParmContainer/Trim", 1);
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "XSecCurve", "XSec/XSecCurve/ParmContainer/XSecCurve", 1);
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "XSec", "ParmContainer/XSec", 1);
 				break;
 			case 15:
-				addContainer(container, prefix + "XSecCurve/ParmContainer");
+				addContainer(container, XPathUtil.getChildElement(geom, "XSecCurve/ParmContainer"), prefix + "XSecCurve/ParmContainer");
 				break;
 		}
 		// sub surfaces
 		int[] counters = new int[SUBSURFACES.length];
 		for (int i = 0; i < SUBSURFACES.length; i++) counters[i] = 1;
-		int nSubSurface = xpu.getElementNodes(prefix + "Geom/SubSurfaces/SubSurface").getLength();
-		for (int i = 1; i <= nSubSurface; i++) {
-			String ssPrefix = prefix + "Geom/SubSurfaces/SubSurface[" + i + "]";
-			String sspPrefix = ssPrefix + "/ParmContainer";
-			int ssType = xpu.getInteger(ssPrefix + "/SubSurfaceInfo/Type");
+		List<Node> subSurfaces = XPathUtil.getChildElements(geom, "Geom/SubSurfaces/SubSurface");
+		for (int i = 1; i <= subSurfaces.size(); i++) {
+			Node subSurface = subSurfaces.get(i - 1);
+			String sspPrefix = prefix + "Geom/SubSurfaces/SubSurface[" + i + "]/ParmContainer";
+			int ssType = XPathUtil.parseInteger(XPathUtil.getChildText(subSurface, "SubSurfaceInfo/Type"));
 			String name = SUBSURFACES[ssType] + "_" + counters[ssType]++;
-			Node node = xpu.getElementNode(sspPrefix + "/" + SUBSURFACES[ssType]);
+			Node node = XPathUtil.getChildElement(subSurface, "ParmContainer/" + SUBSURFACES[ssType]);
 			TreeItem<DesignVariableGroup> group = new TreeItem<>(new DesignVariableGroup(name));
 			addDesignVariables(container, group, node, sspPrefix + "/" + node.getNodeName());
 			container.getChildren().add(group);
@@ -188,18 +416,19 @@ public class OpenVSP3File {
 	}
 	
 	private void addTopLevelContainers() throws Exception {
+		Node root = xpu.getElementNode("/Vsp_Geometry");
 		NodeList nodes = xpu.getElementNodes("/Vsp_Geometry/*/ParmContainer");
 		for (int i = 0; i < nodes.getLength(); i++) {
 			Node node = nodes.item(i);
-			Node parent = node.getParentNode();
-			containerArrayList.add(getContainer("/Vsp_Geometry/" + parent.getNodeName() + "/ParmContainer"));
+			String path = node.getParentNode().getNodeName() + "/ParmContainer";
+			containerArrayList.add(getContainer(XPathUtil.getChildElement(root, path), "/Vsp_Geometry/" + path));
 		}
 	}
 	
-	private TreeItem<DesignVariableGroup> getContainer(String prefix) throws Exception {
-		String name = xpu.getElement(prefix + "/Name");
+	private TreeItem<DesignVariableGroup> getContainer(Node node, String prefix) throws Exception {
+		String name = XPathUtil.getChildText(node, "Name");
 		TreeItem<DesignVariableGroup> container = new TreeItem<>(new DesignVariableGroup(name));
-		addContainer(container, prefix);
+		addContainer(container, node, prefix);
 		if (name.equals("CFDMeshSettings")) addCFDFileContainer(container);
 		return container;
 	}
@@ -211,39 +440,19 @@ public class OpenVSP3File {
 		return container;
 	}
 	
-	private TreeItem<DesignVariableGroup> addCFDFileContainer(TreeItem<DesignVariableGroup> container) throws Exception {
+	TreeItem<DesignVariableGroup> addCFDFileContainer(TreeItem<DesignVariableGroup> container) throws Exception {
 		// CFD file types
 		addOutputGroup(container, CFDFILE, CFDEXPORTS, CFDFILE);
 		return container;
 	}
 
-	private TreeItem<DesignVariableGroup> getMassPropsContainer(int nGeoms) throws Exception {
+	private TreeItem<DesignVariableGroup> getMassPropsContainer() throws Exception {
 		// MassProps Data
 		TreeItem<DesignVariableGroup> container = new TreeItem<>(new DesignVariableGroup(MASSPROP));
 		// use container name for id
 		String id = MASSPROP;
 		// components
-		for (int i = 1; i <= nGeoms; i++) {
-			// figure out symmetry (nSyms for comp geom)
-			String prefix = GEOMETRYPATH + "[" + i + "]/";
-			int type = xpu.getInteger(prefix + "/GeomBase/TypeID");
-			if ((type == 6) || (type == 12)) {
-				nSyms.add(0);
-			} else {
-				String symPrefix = prefix + "ParmContainer/Sym/";
-				int aFlag = (int)Double.parseDouble(xpu.getElementAttribute(symPrefix + "Sym_Axial_Flag", "Value", "0.0"));
-				int pFlag = (int)Double.parseDouble(xpu.getElementAttribute(symPrefix + "Sym_Planar_Flag", "Value", "0.0"));
-				int nRot  = (int)Double.parseDouble(xpu.getElementAttribute(symPrefix + "Sym_Rot_N", "Value", "0.0"));
-				int ns = (aFlag == 0) ? 1 : nRot;
-				if ((pFlag & 1) == 1) ns *= 2;
-				if ((pFlag & 2) == 2) ns *= 2;
-				if ((pFlag & 4) == 4) ns *= 2;
-				if (type == 11) {
-					int nBlades = (int)Double.parseDouble(xpu.getElementAttribute(prefix + "ParmContainer/Design/NumBlade", "Value", "0.0"));
-					ns *= nBlades;
-				}
-				nSyms.add(ns);
-			}
+		for (int i = 1; i <= nSyms.size(); i++) {
 			String groupName = containerArrayList.get(i).getValue().getName();
 			for (int j = 0; j < nSyms.get(i-1); j++) {
 				addOutputGroup(container, groupName + j, MASSPROPVALUES, id);
@@ -254,8 +463,59 @@ public class OpenVSP3File {
 		return container;
 	}
 	
-	private void addContainer(TreeItem<DesignVariableGroup> container, String prefix) throws Exception {
-		NodeList nodes = xpu.getElementNode(prefix).getChildNodes();
+	private TreeItem<DesignVariableGroup> getDegenGeomContainer() throws Exception {
+		// DegenGeom summaries, one DegenGeom component for each symmetric copy like MassProps
+		TreeItem<DesignVariableGroup> container = new TreeItem<>(new DesignVariableGroup(DEGENGEOM));
+		for (int i = 1; i <= nSyms.size(); i++) {
+			String groupName = containerArrayList.get(i).getValue().getName();
+			for (int j = 0; j < nSyms.get(i-1); j++) {
+				addOutputGroup(container, groupName + j, DEGENGEOMVALUES, DEGENGEOM);
+			}
+		}
+		// Totals
+		addOutputGroup(container, "Totals", DEGENGEOMVALUES, DEGENGEOM);
+		return container;
+	}
+	
+	private TreeItem<DesignVariableGroup> getMeshContainer() throws Exception {
+		// Mesh file summaries, the CFD mesh files only if there are CFDMeshSettings
+		TreeItem<DesignVariableGroup> container = new TreeItem<>(new DesignVariableGroup(MESH));
+		for (String format : MESHFORMATS) addOutputGroup(container, format, MESHVALUES, MESH);
+		boolean cfdMesh = false;
+		for (TreeItem<DesignVariableGroup> item : containerArrayList) cfdMesh |= item.getValue().getName().equals("CFDMeshSettings");
+		if (cfdMesh) {
+			for (String format : MESHFORMATS) addOutputGroup(container, CFDFILE + "_" + format, MESHVALUES, MESH);
+		}
+		return container;
+	}
+	
+	private int getNSym(Node geom) {
+		// figure out symmetry (nSyms for comp geom)
+		int type = XPathUtil.parseInteger(XPathUtil.getChildText(geom, "GeomBase/TypeID"));
+		return getNSym(type, XPathUtil.getNodeAttribute(XPathUtil.getChildElement(geom, "ParmContainer/Sym/Sym_Axial_Flag"), "Value", "0.0"),
+				XPathUtil.getNodeAttribute(XPathUtil.getChildElement(geom, "ParmContainer/Sym/Sym_Planar_Flag"), "Value", "0.0"),
+				XPathUtil.getNodeAttribute(XPathUtil.getChildElement(geom, "ParmContainer/Sym/Sym_Rot_N"), "Value", "0.0"),
+				XPathUtil.getNodeAttribute(XPathUtil.getChildElement(geom, "ParmContainer/Design/NumBlade"), "Value", "0.0"));
+	}
+	
+	static int getNSym(int type, String axialFlag, String planarFlag, String rotN, String numBlade) {
+		if ((type == 6) || (type == 12)) return 0;
+		int aFlag = (int)Double.parseDouble(axialFlag);
+		int pFlag = (int)Double.parseDouble(planarFlag);
+		int nRot  = (int)Double.parseDouble(rotN);
+		int ns = (aFlag == 0) ? 1 : nRot;
+		if ((pFlag & 1) == 1) ns *= 2;
+		if ((pFlag & 2) == 2) ns *= 2;
+		if ((pFlag & 4) == 4) ns *= 2;
+		if (type == 11) {
+			int nBlades = (int)Double.parseDouble(numBlade);
+			ns *= nBlades;
+		}
+		return ns;
+	}
+	
+	private void addContainer(TreeItem<DesignVariableGroup> container, Node parmContainer, String prefix) throws Exception {
+		NodeList nodes = parmContainer.getChildNodes();
 		for (int i = 1; i <= nodes.getLength(); i++) {
 			Node node = nodes.item(i);
 			if (node != null) {
@@ -266,13 +526,13 @@ public class OpenVSP3File {
 		}
 	}
 	
-	private void addWingSections(TreeItem<DesignVariableGroup> container, String prefix, String name, String path, int start) throws Exception {
-		NodeList nodes = xpu.getElementNodes(prefix);
-		for (int i = start; i <= nodes.getLength(); i++) {
+	private void addWingSections(TreeItem<DesignVariableGroup> container, List<Node> xsecs, String prefix, String name, String path, int start) throws Exception {
+		for (int i = start; i <= xsecs.size(); i++) {
+			Node xsec = xsecs.get(i - 1);
 			String sectionPrefix = prefix + "[" + i + "]/";
 			TreeItem<DesignVariableGroup> group = new TreeItem<>(new DesignVariableGroup(name + "_" + (i - 1)));
-			Node node = xpu.getElementNode(sectionPrefix + path);
-			String driverstring = xpu.getElement(sectionPrefix + "XSec/DriverGroup/ChoiceVec");
+			Node node = XPathUtil.getChildElement(xsec, path);
+			String driverstring = XPathUtil.getChildText(xsec, "XSec/DriverGroup/ChoiceVec");
 			if (node != null) {
 				HashSet<String> outputs = new HashSet<>();
 				for (int j = 0; j < CHOICEVECTOR.length; j++) {
@@ -295,12 +555,11 @@ public class OpenVSP3File {
 		}
 	}
 	
-	private void addGroups(TreeItem<DesignVariableGroup> container, String prefix, String name, String path, int start) throws Exception {
-		NodeList nodes = xpu.getElementNodes(prefix);
-		for (int i = start; i <= nodes.getLength(); i++) {
+	private void addGroups(TreeItem<DesignVariableGroup> container, List<Node> xsecs, String prefix, String name, String path, int start) throws Exception {
+		for (int i = start; i <= xsecs.size(); i++) {
 			String sectionPrefix = prefix + "[" + i + "]/";
 			TreeItem<DesignVariableGroup> group = new TreeItem<>(new DesignVariableGroup(name +"_" + (i-1)));
-			Node node = xpu.getElementNode(sectionPrefix + path);
+			Node node = XPathUtil.getChildElement(xsecs.get(i - 1), path);
 			if (node != null) {
 				addDesignVariables(container, group, node, sectionPrefix + "/" + path);
 				container.getChildren().add(group);
@@ -308,11 +567,6 @@ public class OpenVSP3File {
 		}
 	}
 	
-	private void addGroup(TreeItem<DesignVariableGroup> container, String xpath) throws Exception {
-		Node node = xpu.getElementNode(xpath);
-		addGroup(container, node, xpath);
-	}
-	
 	private void addGroup(TreeItem<DesignVariableGroup> container, Node node, String xpath) throws Exception {
 		if (node != null) {
 			TreeItem<DesignVariableGroup> group = new TreeItem<>(new DesignVariableGroup(node.getNodeName()));
@@ -334,16 +588,19 @@ public class OpenVSP3File {
 		}
 	}
 	
-	private void addDesignVariable(TreeItem<DesignVariableGroup> container, TreeItem<DesignVariableGroup> group,
+	void addDesignVariable(TreeItem<DesignVariableGroup> container, TreeItem<DesignVariableGroup> group,
 			String name, String id, String value, String xpath, boolean isOutput) throws Exception {
 		DesignVariable dv = new DesignVariable(container.getValue().getName(), group.getValue().getName(), name, id, value);
 		dv.setXPath(xpath);
 		dv.setVspValue(value);
 		// check for naming issues
-		String fullName = dv.getFullName();
-		ObservableList<DesignVariable> existing = designVariables.filtered(v -> (v.getFullName().equals(fullName)));
-		if (!addID && (existing.size() > 0)) {
-			throw new Exception("Design Variable Naming problem: " + dv.getFullName() + " already exists.");
+		DeferredDesignVariable ddv = null;
+		List<DeferredDesignVariable> deferredList = deferred.get();
+		if (deferredList == null) {
+			checkFullName(dv);
+		} else {
+			ddv = new DeferredDesignVariable(container, group, dv);
+			deferredList.add(ddv);
 		}
 		Matcher matcher = invalidChars.matcher(dv.getModelCenterName(true, false, false));
 		while (matcher.find()) {
@@ -357,9 +614,42 @@ public class OpenVSP3File {
 		if (isOutput || shouldMakeOutput(dv)) {
 			dv.setState("Output");
 		}
+		if (ddv != null) {
+			ddv.add = true;
+		} else {
+			addDesignVariable(container, group, dv);
+		}
+	}
+	
+	/**
+	 * Adds design variables that are already in their container and group lists.
+	 */
+	void addDesignVariables(List<DesignVariable> list) {
+		designVariables.addAll(list);
+		for (DesignVariable dv : list) designVariableMap.putIfAbsent(dv.getFullName(), dv);
+	}
+	
+	private void registerDesignVariable(DesignVariable dv) {
+		designVariables.add(dv);
+		designVariableMap.putIfAbsent(dv.getFullName(), dv);
+	}
+	
+	private void checkFullName(DesignVariable dv) throws Exception {
+		if (!addID && designVariableMap.containsKey(dv.getFullName())) {
+			throw new Exception("Design Variable Naming problem: " + dv.getFullName() + " already exists.");
+		}
+	}
+	
+	private void addDesignVariable(TreeItem<DesignVariableGroup> container, TreeItem<DesignVariableGroup> group, DesignVariable dv) {
+		DesignVariable previous = (previousDesignVariables == null) ? null : previousDesignVariables.get(dv.getFullName());
+		if (previous != null) {
+			dv.checkedProperty().set(previous.isChecked());
+			if (!dv.getState().equals("Output") && !previous.getState().equals("Output")) dv.setState(previous.getState());
+			if (Objects.equals(previous.getVspValue(), dv.getVspValue())) dv.valueProperty().set(previous.getValue());
+		}
 		container.getValue().getDesignVariables().add(dv);
 		group.getValue().getDesignVariables().add(dv);
-		designVariables.add(dv);
+		registerDesignVariable(dv);
 	}
 	
 	private void addOutputGroup(TreeItem<DesignVariableGroup> container, String groupName,
@@ -381,6 +671,7 @@ public class OpenVSP3File {
 	
 	public void updateCompGeom(Map<String, String> map) throws Exception {
 		compGeomContainer.getChildren().clear();
+		compGeomContainer.getValue().getDesignVariables().clear();
 		String groupName = "";
 		TreeItem<DesignVariableGroup> group = null;
 		for (String key : map.keySet()) {
@@ -398,6 +689,7 @@ public class OpenVSP3File {
 	
 	public void updateTagCompGeom(Map<String, String> map) throws Exception {
 		compGeom2Container.getChildren().clear();
+		compGeom2Container.getValue().getDesignVariables().clear();
 		String groupName = "";
 		TreeItem<DesignVariableGroup> group = null;
 		for (String key : map.keySet()) {
@@ -17,22 +17,24 @@
 
 package openvsp3plugin;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.FileWriter;
-import java.nio.file.FileSystems;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import javafx.collections.ObservableList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class contains OpenMDAO version of the plugin. 
@@ -41,7 +43,6 @@ class OpenVSP3Plugin {
 	
 	static final String VERSION = "2.0.6";
 	static final String TITLE = "OpenVSP 3.0 Plugin v(" + VERSION + ")";
-	static final String CSVSPLITSTRING = "\\s+|\\s*,\\s*";
 	static final String FILE = "File";
 	static final String COMPGEOM = "CompGeom";
 	static final String COMPGEOM2 = "TagCompGeom";
@@ -49,12 +50,24 @@ class OpenVSP3Plugin {
 	static final String[] COMPGEOMVALUES2 = {"TagTheoreticalArea", "TagWettedArea"};
 	static final String MASSPROP = "MassProperties";
 	static final String[] MASSPROPVALUES = {"Mass", "cgX", "cgY", "cgZ", "Ixx", "Iyy", "Izz", "Ixy", "Ixz", "Iyz", "Volume"};
+	static final String DEGENGEOM = "DegenGeom";
+	static final String[] DEGENGEOMVALUES = {"PlanformArea", "WettedArea", "StickLength"};
+	static final String MESH = "Mesh";
+	static final String[] MESHFORMATS = {"stl", "tri", "msh"};
+	static final String[] MESHVALUES = {"Triangles", "Area", "XMin", "YMin", "ZMin", "XMax", "YMax", "ZMax",
+												"OpenEdges", "NonManifoldEdges", "Watertight"};
+	static final HashSet<String> CFDONLY = new HashSet<>(Arrays.asList(new String[] {"CFDMeshSettings"}));
+	static final String SKIPFILE = "OpenVSP3Plugin.skip";
 	static final HashSet<String> MADETEMP = new HashSet<>(Arrays.asList(new String[] {"stl", "dat", "tri", "msh"}));
 	static final String[] EXPORTS = {"vsp3", "DegenGeom", "des", "hrm", "p3d", "stl", "dat", "tri", "msh",
 												"pov", "inc", "x3d", "stp", "igs", "dxf", "svg"};
 	static final String CFDFILE = "CFDFile";
 	static final String[] CFDEXPORTS = {"stl", "poly", "tri", "obj", "dat", "key", "msh", "srf", "tkey", "facet"};
 	private static final Logger LOG = new Logger(OpenVSP3Plugin.class.getSimpleName());
+	private static Integer batchThreads = Integer.getInteger("OpenVSP3Plugin.batchThreads", Runtime.getRuntime().availableProcessors());
+	private static Integer batchPointsPerProcess = Integer.getInteger("OpenVSP3Plugin.batchPointsPerProcess", 1);
+	// shared by the batches that run at the same time, e.g. server requests, so they start at most batchThreads OpenVSP runs
+	private static Semaphore batchSlots = null;
 			
 	static final Map<String, String> EXPORTMAP;
 	static
@@ -90,10 +103,36 @@ class OpenVSP3Plugin {
 		CFDMAP.put("facet", "CFD_FACET_TYPE");
     }
 	
+	public static void setBatchThreads(Integer batchThreads) {
+		OpenVSP3Plugin.batchThreads = batchThreads;
+	}
+	
+	/**
+	 * Returns the batch execute slots, the number is fixed the first time a batch runs.
+	 */
+	private static synchronized Semaphore getBatchSlots() {
+		if (batchSlots == null) batchSlots = new Semaphore(Math.max(1, batchThreads), true);
+		return batchSlots;
+	}
+	
+	public static void setBatchPointsPerProcess(Integer batchPointsPerProcess) {
+		OpenVSP3Plugin.batchPointsPerProcess = batchPointsPerProcess;
+	}
+	
+	/**
+	 * Runs OpenVSP for the des file in each of the directories.
+	 */
+	interface OpenVSPRunner {
+		void run(List<File> directories) throws Exception;
+	}
+	
 	private Path openMDAOStatePath = Paths.get("State.xml");
 	protected String tempDir;
 	protected SwingDialog dialog;
 	protected PluginState pluginState = null;
+	private AnalysisPlan plan = null;
+	private final OpenVSPSupervisor supervisor = new OpenVSPSupervisor();
+	private final AtomicInteger batches = new AtomicInteger();
 	protected String componentName = "OpenMDAO";
 	private String openVSPExe;
 	private String openVSPVersion;
@@ -168,15 +207,10 @@ class OpenVSP3Plugin {
 				}
 			}
 		}
-		openVSPVersion = extractOpenVSPVersion(openVSPExe);
-		String tmp;
+		openVSPVersion = OpenVSPVersion.getVersion(openVSPExe);
 		if (useTempDir) {
-			tmp = System.getenv("TMP");
-			Path basedir = FileSystems.getDefault().getPath(tmp);
-			Path tempDirPath = Files.createTempDirectory(basedir, "OpenVSP3Plugin_");
-			tempDir = tempDirPath.toString();
+			tempDir = OpenVSPWorkspaces.getWorkspaces().acquire("OpenVSP3Plugin_").toString();
 		} else {
-			tmp = ".";
 			tempDir = ".";
 		}
 		LOG.info(String.format("initOpenVSP3Plugin() - OpenVSP_EXE = %s (%s), TMP = %s", openVSPExe, openVSPVersion, tempDir));
@@ -200,17 +234,455 @@ class OpenVSP3Plugin {
 	
 	void configureProcessBuilder(ProcessBuilder pb) {
 		pb.directory(new File(tempDir));
+		// the output is read by OpenVSPSupervisor
 		pb.redirectErrorStream(true);
-		pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
 	}
 	
-	void runOpenVSPScript(String vspFilename) throws Exception {
+	void runOpenVSPScript(String vspFilename, long budgetMillis) throws Exception {
+		runOpenVSPScript(vspFilename, new File(tempDir), budgetMillis);
+	}
+	
+	/**
+	 * Runs OpenVSP3Plugin.vspscript in directory, the process is killed if it runs longer than budgetMillis (0 is no limit).
+	 */
+	void runOpenVSPScript(String vspFilename, File directory, long budgetMillis) throws Exception {
 		LOG.trace("runOpenVSPScript()");
 		ProcessBuilder pb = new ProcessBuilder().command(openVSPExe,  new File(vspFilename).getAbsolutePath(),
 						"-script", "OpenVSP3Plugin.vspscript");	
 		configureProcessBuilder(pb);
-		Process p = pb.start();
-		LOG.info(String.format("runOpenVSPScript() - " + pb.command().toString() + " - Exit code %d", p.waitFor()));
+		pb.directory(directory);
+		LOG.info(String.format("runOpenVSPScript() - " + pb.command().toString() + " - Exit code %d", supervisor.run(pb, budgetMillis)));
+	}
+	
+	/**
+	 * Stops the OpenVSP runs in progress, a batch returns CANCELLED results for the points that did not finish.
+	 */
+	public void cancelOpenVSP() {
+		supervisor.cancel();
+	}
+	
+	/**
+	 * Returns the AnalysisPlan for pluginState, it is built again when pluginState or the des file order changes.
+	 */
+	synchronized AnalysisPlan getPlan() {
+		boolean sort = shouldSort();
+		if ((plan == null) || (plan.getPluginState() != pluginState) || (plan.isSorted() != sort)) plan = new AnalysisPlan(pluginState, sort);
+		return plan;
+	}
+	
+	/**
+	 * Runs the analyses for the des file in tempDir, with a worker from the pool if there is one
+	 * otherwise by starting OpenVSP with OpenVSP3Plugin.vspscript.
+	 */
+	void runOpenVSP() throws Exception {
+		LOG.trace("runOpenVSP()");
+		AnalysisPlan plan = getPlan();
+		supervisor.reset();
+		OpenVSPWorkerPool pool = OpenVSPWorkerPool.getPool();
+		OpenVSPRunner runner;
+		if (pool == null) {
+			runner = directories -> {
+				writeVSPScriptFile("OpenVSP3Plugin.vspscript", plan.needsVSP3());
+				runOpenVSPScript(pluginState.getOpenVSPFilename(), OpenVSPSupervisor.getBudgetMillis(plan, 1));
+			};
+		} else {
+			runner = getWorkerRunner(pool);
+		}
+		withResultCache(runner, plan, plan.getDesInputs()).run(Collections.singletonList(new File(tempDir)));
+	}
+	
+	/**
+	 * Returns runner with the result cache in front of it, a des file that was evaluated before
+	 * gets the cached output files instead of running OpenVSP. Returns runner if the cache is off.
+	 * With the analysis cache each analysis is cached by the des lines it depends on (desInputs is
+	 * the order of the des lines), the cached analyses are restored and written to OpenVSP3Plugin.skip.
+	 */
+	OpenVSPRunner withResultCache(OpenVSPRunner runner, AnalysisPlan plan, List<DesignVariable> desInputs) throws Exception {
+		OpenVSPResultCache cache = OpenVSPResultCache.getCache();
+		if (cache == null) return runner;
+		File baseline = new File(pluginState.getOpenVSPFilename());
+		File exe = new File(openVSPExe);
+		String context = cache.getContext(exe, baseline, pluginState.getSetID(), pluginState.getNApplyDes(), plan.getOutputs());
+		String analysisContext = cache.getContext(exe, baseline, pluginState.getSetID(), pluginState.getNApplyDes(), new ArrayList<>());
+		List<String> names = plan.getOutputFileNames();
+		List<AnalysisPlan.Analysis> analyses = new ArrayList<>();
+		if (cache.cachesAnalyses()) {
+			for (AnalysisPlan.Analysis analysis : plan.getAnalyses()) {
+				if (analysis.isCacheable()) analyses.add(analysis);
+			}
+		}
+		boolean[] cfdOnly = new boolean[desInputs.size()];
+		for (int i = 0; i < cfdOnly.length; i++) cfdOnly[i] = CFDONLY.contains(desInputs.get(i).getContainer());
+		return directories -> {
+			List<File> toRun = new ArrayList<>();
+			Map<File, String> fingerprints = new HashMap<>();
+			Map<File, Map<AnalysisPlan.Analysis, String>> analysisFingerprints = new HashMap<>();
+			for (File directory : directories) {
+				List<String> lines = Files.readAllLines(new File(directory, "OpenVSP3Plugin.des").toPath());
+				if (cache.cachesResults()) {
+					String fingerprint = cache.getFingerprint(context, lines);
+					if (cache.restore(fingerprint, directory)) {
+						LOG.debug("withResultCache() - restored " + directory.getName());
+						continue;
+					}
+					fingerprints.put(directory, fingerprint);
+				}
+				// remove old outputs so a failed run is not cached
+				for (String name : names) new File(directory, name).delete();
+				Map<AnalysisPlan.Analysis, String> directoryFingerprints = new LinkedHashMap<>();
+				StringBuilder skip = new StringBuilder(",");
+				for (AnalysisPlan.Analysis analysis : analyses) {
+					List<String> analysisLines = lines;
+					if (analysis.getType() != AnalysisPlan.Type.CFDMESH) {
+						// the first line is the count, the others are in desInputs order
+						analysisLines = new ArrayList<>();
+						for (int i = 1; i < lines.size(); i++) {
+							if ((i > cfdOnly.length) || !cfdOnly[i - 1]) analysisLines.add(lines.get(i));
+						}
+					}
+					String analysisFingerprint = cache.getFingerprint(analysisContext + "|" + analysis.getName(), analysisLines);
+					if (cache.restore(analysisFingerprint, directory)) {
+						skip.append(analysis.getName()).append(",");
+					} else {
+						directoryFingerprints.put(analysis, analysisFingerprint);
+					}
+				}
+				if (!analyses.isEmpty()) {
+					Files.write(new File(directory, SKIPFILE).toPath(), skip.toString().getBytes());
+					LOG.debug("withResultCache() - " + directory.getName() + " skipping " + skip);
+				}
+				analysisFingerprints.put(directory, directoryFingerprints);
+				toRun.add(directory);
+			}
+			if (toRun.isEmpty()) return;
+			runner.run(toRun);
+			for (File directory : toRun) {
+				for (Map.Entry<AnalysisPlan.Analysis, String> entry : analysisFingerprints.get(directory).entrySet()) {
+					cache.store(entry.getValue(), directory, entry.getKey().getFileNames());
+				}
+				if (fingerprints.containsKey(directory)) cache.store(fingerprints.get(directory), directory, names);
+			}
+		};
+	}
+	
+	/**
+	 * Returns the script commands for a worker, the directory is in the script variable dir.
+	 */
+	String getWorkerCommands() throws IOException {
+		StringWriter commands = new StringWriter();
+		try (BufferedWriter bw = new BufferedWriter(commands)) {
+			writeVSPScriptCommands(bw, "      ", "dir", null, getPlan().needsVSP3());
+		}
+		return commands.toString();
+	}
+	
+	/**
+	 * Returns a runner that evaluates each directory with a worker from pool.
+	 */
+	OpenVSPRunner getWorkerRunner(OpenVSPWorkerPool pool) throws IOException {
+		String commands = getWorkerCommands();
+		long budget = OpenVSPSupervisor.getBudgetMillis(getPlan(), 1);
+		long timeout = (budget > 0) ? budget : OpenVSPWorkerPool.getTimeoutMillis();
+		return directories -> {
+			for (File directory : directories) runOpenVSPWorker(pool, commands, directory, timeout);
+		};
+	}
+	
+	void runOpenVSPWorker(OpenVSPWorkerPool pool, String commands, File directory, long timeoutMillis) throws Exception {
+		supervisor.checkCancelled();
+		String baseline = new File(pluginState.getOpenVSPFilename()).getAbsolutePath();
+		OpenVSPWorker worker = pool.lease(openVSPExe, baseline, commands);
+		boolean ok = false;
+		try {
+			worker.evaluate(directory, timeoutMillis, supervisor);
+			ok = true;
+		} finally {
+			pool.release(worker, ok);
+		}
+	}
+	
+	/**
+	 * Returns the inputs in the order of the values in a runBatch() point.
+	 */
+	List<DesignVariable> getBatchInputs() {
+		return getPlan().getInputs();
+	}
+	
+	/**
+	 * Evaluates each point (the values of getBatchInputs()) in its own directory under tempDir
+	 * with at most batchThreads running OpenVSP at once, the results are in the same order as points.
+	 * Without workers one OpenVSP process evaluates up to batchPointsPerProcess points.
+	 * The point directories are deleted after the outputs are read unless File outputs are selected.
+	 */
+	List<OpenVSPResult> runBatch(List<double[]> points) throws Exception {
+		return runBatch(points, false);
+	}
+	
+	/**
+	 * With numeric the results have the output numbers (see readOutputValues()) instead of the output map.
+	 */
+	List<OpenVSPResult> runBatch(List<double[]> points, boolean numeric) throws Exception {
+		LOG.trace("runBatch()");
+		if (pluginState == null) throw new Exception("Plugin state is null\nOpen UI and load file.");
+		AnalysisPlan plan = getPlan();
+		List<DesignVariable> inputs = plan.getInputs();
+		for (int i = 0; i < points.size(); i++) {
+			if (points.get(i).length != inputs.size()) {
+				throw new Exception(String.format("Batch point %d has %d values not %d", i, points.get(i).length, inputs.size()));
+			}
+		}
+		// the des order is sorted once by getPlan() so concurrent batches do not touch the design variable list
+		List<DesignVariable> desInputs = plan.getDesInputs();
+		boolean keepFiles = plan.hasFileOutputs();
+		OpenVSPWorkerPool pool = OpenVSPWorkerPool.getPool();
+		OpenVSPRunner runner;
+		int pointsPerProcess = 1;
+		if (pool == null) {
+			StringWriter sw = new StringWriter();
+			try (BufferedWriter bw = new BufferedWriter(sw)) {
+				writeVSPScript(bw, ".", plan.needsVSP3());
+			}
+			String script = sw.toString();
+			String baseline = pluginState.getOpenVSPFilename();
+			runner = directories -> {
+				// the first directory is the working directory, the others are named in the script
+				File directory = directories.get(0);
+				if (directories.size() == 1) {
+					Files.write(new File(directory, "OpenVSP3Plugin.vspscript").toPath(), script.getBytes());
+				} else {
+					try (BufferedWriter bw = new BufferedWriter(new FileWriter(new File(directory, "OpenVSP3Plugin.vspscript")))) {
+						writeMultiPointVSPScript(bw, baseline, directories, plan.needsVSP3());
+					}
+				}
+				runOpenVSPScript(baseline, directory, OpenVSPSupervisor.getBudgetMillis(plan, directories.size()));
+			};
+			pointsPerProcess = Math.max(1, batchPointsPerProcess);
+		} else {
+			runner = getWorkerRunner(pool);
+		}
+		OpenVSPRunner cachedRunner = withResultCache(runner, plan, desInputs);
+		// enough groups to keep batchThreads busy, each group is one runner call
+		int threads = Math.max(1, Math.min(batchThreads, points.size()));
+		int groups = Math.max(threads, (points.size() + pointsPerProcess - 1) / pointsPerProcess);
+		groups = Math.min(groups, points.size());
+		supervisor.reset();
+		// batches can run at the same time so each has its own directory names
+		int batch = batches.getAndIncrement();
+		List<BatchGroup> batchGroups = new ArrayList<>();
+		for (int g = 0; g < groups; g++) {
+			int first = g * points.size() / groups;
+			int last = (g + 1) * points.size() / groups;
+			batchGroups.add(new BatchGroup(batch, first, points.subList(first, last)));
+		}
+		// des files are written and outputs read while other groups are running in OpenVSP
+		OpenVSPPipeline<BatchGroup> pipeline = new OpenVSPPipeline<BatchGroup>(threads)
+				.addStage("prepare", 1, group -> prepareBatchGroup(group, plan, desInputs))
+				.addStage("execute", threads, group -> executeBatchGroup(group, cachedRunner))
+				.addStage("harvest", 1, group -> harvestBatchGroup(group, plan, keepFiles, numeric));
+		long start = System.currentTimeMillis();
+		if (pool != null) pool.beginBatch();
+		try {
+			pipeline.run(batchGroups);
+		} finally {
+			if (pool != null) pool.endBatch();
+		}
+		LOG.info(String.format("runBatch() - %d points in %d processes in %d ms", points.size(), groups, System.currentTimeMillis() - start));
+		LOG.info("runBatch() - " + pipeline.getStatistics());
+		List<OpenVSPResult> results = new ArrayList<>();
+		for (BatchGroup group : batchGroups) results.addAll(group.results);
+		return results;
+	}
+	
+	/**
+	 * The points evaluated by one runner call, the first point is number first.
+	 * A point with an error is not run or read.
+	 */
+	private static class BatchGroup {
+		final int batch;
+		final int first;
+		final List<double[]> points;
+		final List<File> directories = new ArrayList<>();
+		final Exception[] errors;
+		final List<OpenVSPResult> results = new ArrayList<>();
+		
+		BatchGroup(int batch, int first, List<double[]> points) {
+			this.batch = batch;
+			this.first = first;
+			this.points = points;
+			this.errors = new Exception[points.size()];
+		}
+	}
+	
+	private void prepareBatchGroup(BatchGroup group, AnalysisPlan plan, List<DesignVariable> desInputs) {
+		try {
+			OpenVSPWorkspaces.getWorkspaces().checkQuota();
+		} catch (Exception ex) {
+			Arrays.fill(group.errors, ex);
+			return;
+		}
+		for (int p = 0; p < group.points.size(); p++) {
+			File directory = new File(tempDir, String.format("OpenVSP3PluginBatch%dPoint%d", group.batch, group.first + p));
+			group.directories.add(directory);
+			try {
+				Files.createDirectories(directory.toPath());
+				Map<String, String> values = new HashMap<>();
+				double[] point = group.points.get(p);
+				for (int i = 0; i < point.length; i++) {
+					values.put(plan.getInputs().get(i).getFullName(), Double.toString(point[i]));
+				}
+				pluginState.writeDesFile(new File(directory, "OpenVSP3Plugin.des"), desInputs, values);
+			} catch (Exception ex) {
+				group.errors[p] = ex;
+			}
+		}
+	}
+	
+	private void executeBatchGroup(BatchGroup group, OpenVSPRunner runner) {
+		List<File> toRun = new ArrayList<>();
+		for (int p = 0; p < group.points.size(); p++) {
+			if (group.errors[p] == null) toRun.add(group.directories.get(p));
+		}
+		Semaphore slots = getBatchSlots();
+		try {
+			// after a cancel the remaining groups fail without starting OpenVSP
+			supervisor.checkCancelled();
+			if (!toRun.isEmpty()) {
+				slots.acquire();
+				try {
+					supervisor.checkCancelled();
+					runner.run(toRun);
+				} finally {
+					slots.release();
+				}
+			}
+		} catch (Exception ex) {
+			for (int p = 0; p < group.points.size(); p++) {
+				if (group.errors[p] == null) group.errors[p] = ex;
+			}
+		}
+	}
+	
+	private void harvestBatchGroup(BatchGroup group, AnalysisPlan plan, boolean keepFiles, boolean numeric) {
+		for (int p = 0; p < group.points.size(); p++) {
+			int index = group.first + p;
+			Exception error = group.errors[p];
+			if (error == null) {
+				try {
+					File directory = group.directories.get(p);
+					group.results.add(numeric ? new OpenVSPResult(index, readOutputValues(directory, plan))
+							: new OpenVSPResult(index, readOutputMap(directory, plan), null));
+					continue;
+				} catch (Exception ex) {
+					error = ex;
+				}
+			}
+			LOG.warn(String.format("runBatch() - point %d failed %s", index, error.toString()));
+			group.results.add(new OpenVSPResult(index, error));
+		}
+		if (!keepFiles) {
+			try {
+				OpenVSPWorkspaces workspaces = OpenVSPWorkspaces.getWorkspaces();
+				for (File directory : group.directories) workspaces.discard(directory);
+			} catch (IOException ex) {
+				LOG.warn("runBatch() - " + ex.toString());
+			}
+		}
+	}
+	
+	/**
+	 * Reads the outputs from the files in directory, File outputs are the file paths.
+	 */
+	Map<String, String> readOutputMap(File directory, AnalysisPlan plan) throws Exception {
+		Map<String, String> values = new LinkedHashMap<>();
+		XPathUtil xpu = null;
+		// the CompGeom, MassProp, DegenGeom and Mesh values are parsed by slot, only the outputs asked for are kept
+		Map<String, String> compGeomMap = new HashMap<>();
+		CompGeomReader compGeomReader = plan.getCompGeomReader();
+		if (!compGeomReader.isEmpty()) putValues(compGeomMap, compGeomReader.getOutputs(), compGeomReader.read(directory));
+		Map<String, String> massPropMap = new HashMap<>();
+		MassPropReader massPropReader = plan.getMassPropReader();
+		if (!massPropReader.isEmpty()) putValues(massPropMap, massPropReader.getOutputs(), massPropReader.read(directory));
+		Map<String, String> degenGeomMap = new HashMap<>();
+		DegenGeomReader degenGeomReader = plan.getDegenGeomReader();
+		if (!degenGeomReader.isEmpty()) putValues(degenGeomMap, degenGeomReader.getOutputs(), degenGeomReader.read(directory));
+		Map<String, String> meshMap = new HashMap<>();
+		MeshReader meshReader = plan.getMeshReader();
+		if (!meshReader.isEmpty()) putValues(meshMap, meshReader.getOutputs(), meshReader.read(directory));
+		for (DesignVariable dv : plan.getOutputs()) {
+			String id = dv.getId();
+			if (id.equals(FILE) || id.equals(CFDFILE)) {
+				String filename = "OpenVSP3Plugin." + dv.getName();
+				if (id.equals(CFDFILE)) filename = "OpenVSP3PluginCFD." + dv.getName();
+				if (dv.getName().equals("DegenGeom")) filename = "OpenVSP3PluginDegenGeom.csv";
+				values.put(dv.getFullName(), new File(directory, filename).getAbsolutePath());
+				continue;
+			}
+			Map<String, String> map = null;
+			if (id.equals(COMPGEOM) || id.equals(COMPGEOM2)) {
+				map = compGeomMap;
+			} else if (id.equals(MASSPROP)) {
+				map = massPropMap;
+			} else if (id.equals(DEGENGEOM)) {
+				map = degenGeomMap;
+			} else if (id.equals(MESH)) {
+				map = meshMap;
+			}
+			if (map != null) {
+				if (!map.containsKey(dv.getFullName())) throw new Exception("readOutputMap() - Couldn't find " + dv.getFullName() + " in map data.");
+				values.put(dv.getFullName(), map.get(dv.getFullName()));
+			} else if (!dv.getXPath().isEmpty()) {
+				if (xpu == null) xpu = new XPathUtil(new File(directory, AnalysisPlan.VSP3FILE));
+				values.put(dv.getFullName(), xpu.getElementAttribute(dv.getXPath(), "Value", ""));
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Reads the outputs from the files in directory as numbers in plan.getOutputs() order, the CompGeom, MassProp,
+	 * DegenGeom and Mesh numbers are used as read and only the XPath values are parsed. File outputs are NaN.
+	 */
+	double[] readOutputValues(File directory, AnalysisPlan plan) throws Exception {
+		double[] values = new double[plan.getOutputs().size()];
+		Arrays.fill(values, Double.NaN);
+		CompGeomReader compGeomReader = plan.getCompGeomReader();
+		if (!compGeomReader.isEmpty()) putValues(values, plan, compGeomReader.getOutputs(), compGeomReader.read(directory));
+		MassPropReader massPropReader = plan.getMassPropReader();
+		if (!massPropReader.isEmpty()) putValues(values, plan, massPropReader.getOutputs(), massPropReader.read(directory));
+		DegenGeomReader degenGeomReader = plan.getDegenGeomReader();
+		if (!degenGeomReader.isEmpty()) putValues(values, plan, degenGeomReader.getOutputs(), degenGeomReader.read(directory));
+		MeshReader meshReader = plan.getMeshReader();
+		if (!meshReader.isEmpty()) putValues(values, plan, meshReader.getOutputs(), meshReader.read(directory));
+		List<DesignVariable> xpathOutputs = plan.getXPathOutputs();
+		if (!xpathOutputs.isEmpty()) {
+			XPathUtil xpu = new XPathUtil(new File(directory, AnalysisPlan.VSP3FILE));
+			for (DesignVariable dv : xpathOutputs) {
+				int index = plan.getOutputIndex(dv);
+				// the analysis outputs were read above
+				if (!Double.isNaN(values[index])) continue;
+				String value = xpu.getElementAttribute(dv.getXPath(), "Value", "");
+				try {
+					values[index] = Double.parseDouble(value);
+				} catch (NumberFormatException ex) {
+					LOG.debug("readOutputValues() - " + dv.getFullName() + " is not a number " + value);
+				}
+			}
+		}
+		return values;
+	}
+	
+	private static void putValues(double[] values, AnalysisPlan plan, List<DesignVariable> outputs, double[] read) throws Exception {
+		for (int i = 0; i < read.length; i++) {
+			// like readOutputMap() a value that was not found fails the point
+			if (Double.isNaN(read[i])) throw new Exception("readOutputValues() - Couldn't find " + outputs.get(i).getFullName() + " in map data.");
+			values[plan.getOutputIndex(outputs.get(i))] = read[i];
+		}
+	}
+	
+	private static void putValues(Map<String, String> map, List<DesignVariable> outputs, double[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if (!Double.isNaN(values[i])) map.put(outputs.get(i).getFullName(), Double.toString(values[i]));
+		}
 	}
 	
 	boolean shouldSort() {
@@ -229,10 +701,12 @@ class OpenVSP3Plugin {
 					// run OpenVSP to create modified vsp3 file
 					writeVSPScriptFile("OpenVSP3Plugin.vspscript");
 					pluginState.writeDesFile(new File(tempDir + "\\OpenVSP3Plugin.des"), shouldSort());
-					runOpenVSPScript(pluginState.getOpenVSPFilename());
+					runOpenVSPScript(pluginState.getOpenVSPFilename(), OpenVSPSupervisor.getBudgetMillis(getPlan(), 1));
 					// run OpenVSP in UI mode and load the modified vsp3 file
 					ProcessBuilder pb = new ProcessBuilder().command(openVSPExe, tempDir + "\\OpenVSP3Plugin.vsp3");
 					configureProcessBuilder(pb);
+					// nothing reads the output of the interactive OpenVSP
+					pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
 					pb.start();
 				} catch (Exception ex) {
 					LOG.fatal(ex.toString());
@@ -244,8 +718,12 @@ class OpenVSP3Plugin {
 	}
 	
 	void writeCompGeomScriptFile(String filename) throws Exception {
+		writeCompGeomScriptFile(new File(tempDir), filename);
+	}
+	
+	void writeCompGeomScriptFile(File directory, String filename) throws Exception {
 		LOG.trace("writeCompGeomScriptFile()");
-		BufferedWriter bw = new BufferedWriter(new FileWriter(tempDir + "\\" + filename));
+		BufferedWriter bw = new BufferedWriter(new FileWriter(new File(directory, filename)));
 		bw.write("void main()"); bw.newLine();
 		bw.write("{"); bw.newLine();
 		bw.write("  SetComputationFileName(COMP_GEOM_TXT_TYPE, \"./OpenVSP3PluginCompGeom.txt\");"); bw.newLine();
@@ -254,154 +732,170 @@ class OpenVSP3Plugin {
 		bw.write("  while ( GetNumTotalErrors() > 0 )"); bw.newLine();
 		bw.write("  {"); bw.newLine();
 		bw.write("    ErrorObj err = PopLastError();"); bw.newLine();
-		bw.write("    Print( err.GetErrorString() );"); bw.newLine();
+		bw.write(OpenVSPOutput.getPrintError("    ")); bw.newLine();
 		bw.write("  }"); bw.newLine();
 		bw.write("}"); bw.newLine();
 		bw.close();
 	}
 	
 	void writeVSPScriptFile(String filename) throws Exception {
+		writeVSPScriptFile(filename, true);
+	}
+	
+	/**
+	 * Writes the script to tempDir, the vsp3 file is left out unless writeVSP3 is true
+	 * (showOpenVSP() and OpenMDAO always need it).
+	 */
+	void writeVSPScriptFile(String filename, boolean writeVSP3) throws Exception {
 		LOG.trace("writeVSPScriptFile()");
 		if (pluginState == null) {
 			LOG.warn("writeVSPScriptFile() pluginState is null");
 		} else {
 			BufferedWriter bw = new BufferedWriter(new FileWriter(tempDir + "\\" + filename));
-			bw.write("void main()"); bw.newLine();
-			bw.write("{"); bw.newLine();
-			bw.write("  array<string> meshgeoms;"); bw.newLine();
-			for (int i = 0; i < pluginState.getNApplyDes(); i++) {
-				bw.write("  ReadApplyDESFile(\"OpenVSP3Plugin.des\");"); bw.newLine();
-			}
-			bw.write(String.format("  WriteVSPFile(\"%s\", %d);", "OpenVSP3Plugin.vsp3", 0)); bw.newLine();
-			ObservableList<DesignVariable> files = pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(FILE)));
-			for (DesignVariable dv : files) {
-				if (dv.getName().equals("vsp3") || dv.getName().equals("des")) {
-					// moved above for loop since we need this file to parse outputs
-				} else if (dv.getName().equals("DegenGeom")) {
-					bw.write("  SetComputationFileName(DEGEN_GEOM_CSV_TYPE, \"" + "OpenVSP3PluginDegenGeom.csv\");"); bw.newLine();
-					bw.write(String.format("  ComputeDegenGeom(%d, DEGEN_GEOM_CSV_TYPE);", pluginState.getSetID())); bw.newLine();
-				} else {
-					if (dv.getName().equals("inc")) continue; // inc is extra file created with pov
-					bw.write(String.format("  ExportFile(\"%s\", %d, %s);", ("OpenVSP3Plugin." + dv.getName()), pluginState.getSetID(), EXPORTMAP.get(dv.getName()))); bw.newLine();
-					if (MADETEMP.contains(dv.getName())) {
-						bw.write("  meshgeoms = FindGeomsWithName(\"MeshGeom\");"); bw.newLine();
-						bw.write("  CutGeomToClipboard(meshgeoms[meshgeoms.length - 1]);"); bw.newLine();
-					}
-				}
-			}
-			// CompGeom
-			if ((pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(COMPGEOM))).size() > 0)
-					|| (pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(COMPGEOM2))).size() > 0)) {
-				bw.write("  SetComputationFileName(COMP_GEOM_TXT_TYPE, \"" + tempDir.replace("\\", "/") + "/OpenVSP3PluginCompGeom.txt\");"); bw.newLine();
-				bw.write("  SetComputationFileName(COMP_GEOM_CSV_TYPE, \"" + tempDir.replace("\\", "/") + "/OpenVSP3PluginCompGeom.csv\");"); bw.newLine();
-				bw.write(String.format("  ComputeCompGeom(%d, false, COMP_GEOM_CSV_TYPE);", pluginState.getSetID())); bw.newLine();
-				bw.write("  meshgeoms = FindGeomsWithName(\"MeshGeom\");"); bw.newLine();
-				bw.write("  CutGeomToClipboard(meshgeoms[meshgeoms.length - 1]);"); bw.newLine();
-			}
-			// MassProperties
-			if (pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(MASSPROP))).size() > 0) {
-				bw.write("  SetComputationFileName(MASS_PROP_TXT_TYPE, \"" + tempDir.replace("\\", "/") + "/OpenVSP3PluginMassProp.txt\");"); bw.newLine();
-				bw.write(String.format("  ComputeMassProps(%d, 100);", pluginState.getSetID())); bw.newLine();
-				bw.write("  meshgeoms = FindGeomsWithName(\"MeshGeom\");"); bw.newLine();
-				bw.write("  CutGeomToClipboard(meshgeoms[meshgeoms.length - 1]);"); bw.newLine();
-			}
-			// CFD Mesh
-			ObservableList<DesignVariable> cfdfiles = pluginState.getDesignVariables().filtered(dv -> (dv.getId().equals(CFDFILE)));
-			for (DesignVariable dv : cfdfiles) {
-				bw.write(String.format("  SetComputationFileName(%s, \"%s\");", CFDMAP.get(dv.getName()), tempDir.replace("\\", "/") + "/OpenVSP3PluginCFD." + dv.getName())); bw.newLine();
-				bw.write(String.format("  ComputeCFDMesh(%d, %s);", pluginState.getSetID(), CFDMAP.get(dv.getName()))); bw.newLine();
-			}
-			bw.write("  while ( GetNumTotalErrors() > 0 )"); bw.newLine();
-			bw.write("  {"); bw.newLine();
-			bw.write("    ErrorObj err = PopLastError();"); bw.newLine();
-			bw.write("    Print( err.GetErrorString() );"); bw.newLine();
-			bw.write("  }"); bw.newLine();
-			bw.write("}"); bw.newLine();
+			writeVSPScript(bw, tempDir.replace("\\", "/"), writeVSP3);
 			bw.close();
 		}
 	}
 	
-	void readCompGeomMaps(Map<String, String> compGeomMap, Map<String, String> tagCompGeomMap) throws Exception {
-		LOG.trace("readCompGeomMaps()");
-		// Read the CompGeom file and store data in map parameters if not null
-		HashMap<String, Integer> nameCount = new HashMap<>();
-		String line;
-		try (BufferedReader br = new BufferedReader(new FileReader(tempDir + "\\OpenVSP3PluginCompGeom.csv"))) {
-			boolean firstTable = true;
-			br.readLine(); // read headers
-			while ((line = br.readLine()) != null) {
-				String[] columns = line.split(CSVSPLITSTRING);
-				if (columns.length < 3) {
-					firstTable = false;
-					br.readLine(); // read 2nd headers after blank line
-				} else if (firstTable) { // old table
-					if (compGeomMap != null) {
-						if (columns.length != 5) {
-							throw new Exception(String.format("CompGeom table has %d columns not 5/n%s", columns.length, line));
-						}
-						// Keep names unique by adding a count
-						String name = columns[0];
-						if (!name.equals("Totals")) {
-							if (nameCount.containsKey(name)) nameCount.put(name, nameCount.get(name) + 1);
-							else nameCount.put(name, 0);
-							name += nameCount.get(name);
-					}
-						for (int i = 1; i < 5; i++) {
-							compGeomMap.put(String.format("%s:%s:%s", COMPGEOM, name, COMPGEOMVALUES[i - 1]), columns[i]);
-						}
-					}
-				} else { // tag table
-					if (tagCompGeomMap != null) {
-						StringBuilder group = new StringBuilder(columns[0]);
-						for (int i = 1; i < columns.length - 2; i++) {
-							group.append("_");
-							group.append(columns[i]);
-						}
-						for (int i = 0; i < 2; i++) {
-							tagCompGeomMap.put(String.format("%s:%s:%s", COMPGEOM2, group.toString(), COMPGEOMVALUES2[i]), columns[columns.length - 2 + i]);
-						}
-					}
-				}
-			}
+	/**
+	 * Writes the script with the outputs in outputDir, the des file is read from the current directory.
+	 */
+	void writeVSPScript(BufferedWriter bw, String outputDir, boolean writeVSP3) throws IOException {
+		bw.write("void main()"); bw.newLine();
+		bw.write("{"); bw.newLine();
+		bw.write("  array<string> meshgeoms;"); bw.newLine();
+		writeVSPScriptCommands(bw, "  ", null, outputDir, writeVSP3);
+		bw.write("  while ( GetNumTotalErrors() > 0 )"); bw.newLine();
+		bw.write("  {"); bw.newLine();
+		bw.write("    ErrorObj err = PopLastError();"); bw.newLine();
+		bw.write(OpenVSPOutput.getPrintError("    ")); bw.newLine();
+		bw.write("  }"); bw.newLine();
+		bw.write("}"); bw.newLine();
+	}
+	
+	/**
+	 * Writes a script that evaluates the des file in each of the directories, the baseline is read
+	 * again before each one and the outputs are written to the directory.
+	 */
+	void writeMultiPointVSPScript(BufferedWriter bw, String baseline, List<File> directories, boolean writeVSP3) throws IOException {
+		bw.write("void main()"); bw.newLine();
+		bw.write("{"); bw.newLine();
+		bw.write("  array<string> meshgeoms;"); bw.newLine();
+		bw.write("  array<string> dirs;"); bw.newLine();
+		for (File directory : directories) {
+			bw.write("  dirs.insertLast(\"" + directory.getAbsolutePath().replace("\\", "/") + "\");"); bw.newLine();
 		}
+		bw.write("  for (uint i = 0; i < dirs.length(); i++)"); bw.newLine();
+		bw.write("  {"); bw.newLine();
+		bw.write("    string dir = dirs[i];"); bw.newLine();
+		bw.write("    if (i > 0)"); bw.newLine();
+		bw.write("    {"); bw.newLine();
+		bw.write("      ClearVSPModel();"); bw.newLine();
+		bw.write("      ReadVSPFile(\"" + new File(baseline).getAbsolutePath().replace("\\", "/") + "\");"); bw.newLine();
+		bw.write("    }"); bw.newLine();
+		writeVSPScriptCommands(bw, "    ", "dir", null, writeVSP3);
+		bw.write("    while ( GetNumTotalErrors() > 0 )"); bw.newLine();
+		bw.write("    {"); bw.newLine();
+		bw.write("      ErrorObj err = PopLastError();"); bw.newLine();
+		bw.write(OpenVSPOutput.getPrintError("      ")); bw.newLine();
+		bw.write("    }"); bw.newLine();
+		bw.write("  }"); bw.newLine();
+		bw.write("}"); bw.newLine();
 	}
 	
 	/**
-	 * Parses the vsp executable to get the version number.
+	 * Writes the script statements that apply the des file and run the analyses in the AnalysisPlan.
+	 * If dir is null the outputs are written to outputDir, otherwise dir is the name of a script string
+	 * variable with the directory (the worker driver script uses this).
+	 * With the analysis cache each analysis is skipped if its name is in OpenVSP3Plugin.skip.
 	 */
-	private String extractOpenVSPVersion(String path) {
-		if (path.equals("Unknown")) return "Unknown";
-		int index = 0;
-		StringBuilder sb = new StringBuilder();
-		char[] text = {'O', 'p', 'e', 'n', 'V', 'S', 'P', ' '};
-		try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(path))) {
-			int i;
-			while ((i = is.read()) != -1) {
-				char ch = (char) i;
-				if (index < 8) {					// find OpenVsp
-					if (i == text[index]) index++;
-					else index = 0;
-				} else if (index < 10) {			// find digits and 2 periods
-					if (Character.isDigit(ch)) {
-						sb.append(ch);
-					} else if (ch == '.') {
-						sb.append(ch);
-						index++;
-					} else {
-						index = 0;
+	void writeVSPScriptCommands(BufferedWriter bw, String indent, String dir, String outputDir, boolean writeVSP3) throws IOException {
+		OpenVSPResultCache cache = OpenVSPResultCache.getCache();
+		boolean skippable = (cache != null) && cache.cachesAnalyses();
+		for (int i = 0; i < pluginState.getNApplyDes(); i++) {
+			bw.write(indent + String.format("ReadApplyDESFile(%s);", scriptPath(dir, null, "OpenVSP3Plugin.des"))); bw.newLine();
+		}
+		if (writeVSP3) {
+			bw.write(indent + String.format("WriteVSPFile(%s, %d);", scriptPath(dir, null, AnalysisPlan.VSP3FILE), 0)); bw.newLine();
+		}
+		if (skippable) {
+			bw.write(indent + "string skip;"); bw.newLine();
+			bw.write(indent + "file skipFile;"); bw.newLine();
+			bw.write(indent + String.format("if (skipFile.open(%s, \"r\") >= 0)", scriptPath(dir, null, SKIPFILE))); bw.newLine();
+			bw.write(indent + "{"); bw.newLine();
+			bw.write(indent + "  skip = skipFile.readString(skipFile.getSize());"); bw.newLine();
+			bw.write(indent + "  skipFile.close();"); bw.newLine();
+			bw.write(indent + "}"); bw.newLine();
+		}
+		int setID = pluginState.getSetID();
+		for (AnalysisPlan.Analysis analysis : getPlan().getAnalyses()) {
+			boolean guarded = skippable && analysis.isCacheable();
+			String inner = guarded ? indent + "  " : indent;
+			String format = analysis.getFormat();
+			writeSkipStart(bw, indent, guarded, analysis.getName());
+			switch (analysis.getType()) {
+				case EXPORT:
+					bw.write(inner + String.format("ExportFile(%s, %d, %s);", scriptPath(dir, null, "OpenVSP3Plugin." + format), setID, EXPORTMAP.get(format))); bw.newLine();
+					if (MADETEMP.contains(format)) {
+						bw.write(inner + "meshgeoms = FindGeomsWithName(\"MeshGeom\");"); bw.newLine();
+						bw.write(inner + "CutGeomToClipboard(meshgeoms[meshgeoms.length - 1]);"); bw.newLine();
 					}
-				} else if (index == 10) {			// find digits after 2nd period
-					if (Character.isDigit(ch)) sb.append(ch);
-					else index++;
-				} else {							// finishsed
 					break;
-				}
+				case DEGENGEOM:
+					bw.write(inner + "SetComputationFileName(DEGEN_GEOM_CSV_TYPE, " + scriptPath(dir, null, "OpenVSP3PluginDegenGeom.csv") + ");"); bw.newLine();
+					bw.write(inner + String.format("ComputeDegenGeom(%d, DEGEN_GEOM_CSV_TYPE);", setID)); bw.newLine();
+					break;
+				case COMPGEOM:
+					bw.write(inner + "SetComputationFileName(COMP_GEOM_TXT_TYPE, " + scriptPath(dir, outputDir, "OpenVSP3PluginCompGeom.txt") + ");"); bw.newLine();
+					bw.write(inner + "SetComputationFileName(COMP_GEOM_CSV_TYPE, " + scriptPath(dir, outputDir, "OpenVSP3PluginCompGeom.csv") + ");"); bw.newLine();
+					bw.write(inner + String.format("ComputeCompGeom(%d, false, COMP_GEOM_CSV_TYPE);", setID)); bw.newLine();
+					bw.write(inner + "meshgeoms = FindGeomsWithName(\"MeshGeom\");"); bw.newLine();
+					bw.write(inner + "CutGeomToClipboard(meshgeoms[meshgeoms.length - 1]);"); bw.newLine();
+					break;
+				case MASSPROP:
+					bw.write(inner + "SetComputationFileName(MASS_PROP_TXT_TYPE, " + scriptPath(dir, outputDir, "OpenVSP3PluginMassProp.txt") + ");"); bw.newLine();
+					bw.write(inner + String.format("ComputeMassProps(%d, 100);", setID)); bw.newLine();
+					bw.write(inner + "meshgeoms = FindGeomsWithName(\"MeshGeom\");"); bw.newLine();
+					bw.write(inner + "CutGeomToClipboard(meshgeoms[meshgeoms.length - 1]);"); bw.newLine();
+					break;
+				case CFDMESH:
+					bw.write(inner + String.format("SetComputationFileName(%s, %s);", CFDMAP.get(format), scriptPath(dir, outputDir, "OpenVSP3PluginCFD." + format))); bw.newLine();
+					bw.write(inner + String.format("ComputeCFDMesh(%d, %s);", setID, CFDMAP.get(format))); bw.newLine();
+					break;
 			}
-		} catch (Exception ex) {
-			LOG.debug("getOpenVSPVersion() - Failed to find VSP version.");
-			return "Unknown";
+			writeSkipEnd(bw, indent, guarded);
 		}
-		return sb.toString();
+	}
+	
+	private static void writeSkipStart(BufferedWriter bw, String indent, boolean skippable, String analysis) throws IOException {
+		if (!skippable) return;
+		bw.write(indent + "if (skip.findFirst(\"," + analysis + ",\") < 0)"); bw.newLine();
+		bw.write(indent + "{"); bw.newLine();
+	}
+	
+	private static void writeSkipEnd(BufferedWriter bw, String indent, boolean skippable) throws IOException {
+		if (!skippable) return;
+		bw.write(indent + "}"); bw.newLine();
+	}
+	
+	/**
+	 * Returns a script string expression for the file name in the dir variable,
+	 * or in outputDir (or relative if null) when there is no dir variable.
+	 */
+	private static String scriptPath(String dir, String outputDir, String name) {
+		if (dir != null) return dir + " + \"/" + name + "\"";
+		if (outputDir != null) return "\"" + outputDir + "/" + name + "\"";
+		return "\"" + name + "\"";
+	}
+	
+	void readCompGeomMaps(Map<String, String> compGeomMap, Map<String, String> tagCompGeomMap) throws Exception {
+		readCompGeomMaps(tempDir, compGeomMap, tagCompGeomMap);
+	}
+	
+	void readCompGeomMaps(String directory, Map<String, String> compGeomMap, Map<String, String> tagCompGeomMap) throws Exception {
+		LOG.trace("readCompGeomMaps()");
+		// Read the CompGeom file and store data in map parameters if not null
+		CompGeomReader.readMaps(new File(directory), compGeomMap, tagCompGeomMap);
 	}
 	
 	/**
@@ -0,0 +1,233 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import javafx.scene.control.TreeItem;
+
+/**
+ * This class saves the parsed OpenVSP3File (set names, nSyms, design variables, the
+ * container tree and the Geom keys) to a binary snapshot and loads it back instead of parsing the vsp3 file.
+ * The snapshot file name is a SHA-256 of the plugin version, the addID flag and the vsp3 contents,
+ * so a changed file or plugin never finds an old snapshot.
+ * A CRC32 at the end of the snapshot catches corrupt files.
+ * The output containers (File, CompGeom, MassProperties) are not saved, OpenVSP3File adds them after loading.
+ */
+class OpenVSP3Snapshot {
+
+	private static final Logger LOG = new Logger(OpenVSP3Snapshot.class.getSimpleName());
+	private static final int MAGIC = 0x56535033; // "VSP3"
+	private static final int FORMAT = 2;
+	private static final String EXTENSION = ".vsp3snapshot";
+
+	private final OpenVSP3File file;
+	private final File snapshot;
+	private final String key;
+	private final Map<String, Integer> stringIndex = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+
+	OpenVSP3Snapshot(OpenVSP3File file, File directory, File input, boolean addID) throws Exception {
+		this.file = file;
+		this.key = getKey(input, addID);
+		this.snapshot = new File(directory, key + EXTENSION);
+	}
+
+	private static String getKey(File input, boolean addID) throws Exception {
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		md.update((OpenVSP3Plugin.VERSION + "|" + addID + "|").getBytes(StandardCharsets.UTF_8));
+		byte[] buffer = new byte[65536];
+		try (InputStream is = new FileInputStream(input)) {
+			int n;
+			while ((n = is.read(buffer)) > 0) md.update(buffer, 0, n);
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte b : md.digest()) sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
+
+	/**
+	 * Returns true if the snapshot was loaded into the OpenVSP3File.
+	 * Nothing is added to the OpenVSP3File unless the whole snapshot is valid,
+	 * a corrupt snapshot is deleted so the next parse can replace it.
+	 */
+	boolean read() {
+		if (!snapshot.isFile()) return false;
+		List<String> setNames = new ArrayList<>();
+		List<Integer> nSyms = new ArrayList<>();
+		List<DesignVariable> designVariables = new ArrayList<>();
+		List<TreeItem<DesignVariableGroup>> containers = new ArrayList<>();
+		List<String> geomKeys = new ArrayList<>();
+		CRC32 crc = new CRC32();
+		try (DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(snapshot)), crc))) {
+			if ((in.readInt() != MAGIC) || (in.readInt() != FORMAT) || !in.readUTF().equals(key)) {
+				throw new IOException("wrong header");
+			}
+			for (int i = in.readInt(); i > 0; i--) setNames.add(readString(in));
+			for (int i = in.readInt(); i > 0; i--) nSyms.add(in.readInt());
+			for (int i = in.readInt(); i > 0; i--) {
+				String value = readString(in);
+				DesignVariable dv = new DesignVariable(readString(in), readString(in), readString(in), readString(in), value);
+				dv.setXPath(readString(in));
+				dv.setVspValue(value);
+				if (in.readBoolean()) dv.setState("Output");
+				designVariables.add(dv);
+			}
+			for (int i = in.readInt(); i > 0; i--) containers.add(readTreeItem(in, designVariables));
+			for (int i = in.readInt(); i > 0; i--) geomKeys.add(readString(in));
+			if ((geomKeys.size() >= containers.size()) || (in.readInt() != designVariables.size()) || (in.readInt() != MAGIC)) {
+				throw new IOException("wrong trailer");
+			}
+			long checksum = crc.getValue();
+			if ((in.readLong() != checksum) || (in.read() != -1)) throw new IOException("wrong checksum");
+		} catch (Exception ex) {
+			LOG.warn(String.format("read() %s is corrupt, parsing the vsp3 file: %s", snapshot.getName(), ex));
+			if (!snapshot.delete()) LOG.warn("read() could not delete " + snapshot.getName());
+			return false;
+		}
+		file.getSetNames().addAll(setNames);
+		file.getNSyms().addAll(nSyms);
+		file.addDesignVariables(designVariables);
+		file.getContainerArrayList().addAll(containers);
+		file.setGeomKeys(geomKeys);
+		LOG.debug(String.format("read() %s %d design variables", snapshot.getName(), designVariables.size()));
+		return true;
+	}
+
+	private TreeItem<DesignVariableGroup> readTreeItem(DataInputStream in, List<DesignVariable> designVariables) throws IOException {
+		TreeItem<DesignVariableGroup> item = new TreeItem<>(new DesignVariableGroup(readString(in)));
+		List<DesignVariable> list = item.getValue().getDesignVariables();
+		for (int i = in.readInt(); i > 0; i--) list.add(designVariables.get(in.readInt()));
+		for (int i = in.readInt(); i > 0; i--) item.getChildren().add(readTreeItem(in, designVariables));
+		return item;
+	}
+
+	/**
+	 * Writes the snapshot of the OpenVSP3File before the output containers are added.
+	 * It is written to a temporary file and renamed so a reader never sees part of it,
+	 * failures are only logged because the snapshot is just a cache.
+	 */
+	void write(List<DesignVariable> designVariables) {
+		File tmp = new File(snapshot.getParentFile(), key + "." + System.nanoTime() + ".tmp");
+		try {
+			Files.createDirectories(snapshot.getParentFile().toPath());
+			Map<DesignVariable, Integer> indices = new IdentityHashMap<>();
+			CRC32 crc = new CRC32();
+			try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)), crc))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT);
+				out.writeUTF(key);
+				out.writeInt(file.getSetNames().size());
+				for (String name : file.getSetNames()) writeString(out, name);
+				out.writeInt(file.getNSyms().size());
+				for (Integer nSym : file.getNSyms()) out.writeInt(nSym);
+				out.writeInt(designVariables.size());
+				for (DesignVariable dv : designVariables) {
+					indices.put(dv, indices.size());
+					writeString(out, dv.getValue());
+					writeString(out, dv.getContainer());
+					writeString(out, dv.getGroup());
+					writeString(out, dv.getName());
+					writeString(out, dv.getId());
+					writeString(out, dv.getXPath());
+					out.writeBoolean(dv.isOutput());
+				}
+				out.writeInt(file.getContainerArrayList().size());
+				for (TreeItem<DesignVariableGroup> container : file.getContainerArrayList()) writeTreeItem(out, container, indices);
+				out.writeInt(file.getGeomKeys().size());
+				for (String geomKey : file.getGeomKeys()) writeString(out, geomKey);
+				out.writeInt(designVariables.size());
+				out.writeInt(MAGIC);
+				out.writeLong(crc.getValue());
+			}
+			try {
+				Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException ex) {
+				Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			LOG.debug(String.format("write() %s %d bytes", snapshot.getName(), snapshot.length()));
+		} catch (Exception ex) {
+			LOG.warn(String.format("write() could not write %s: %s", snapshot.getName(), ex));
+			tmp.delete();
+		}
+	}
+
+	private void writeTreeItem(DataOutputStream out, TreeItem<DesignVariableGroup> item, Map<DesignVariable, Integer> indices) throws IOException {
+		writeString(out, item.getValue().getName());
+		List<DesignVariable> list = item.getValue().getDesignVariables();
+		out.writeInt(list.size());
+		for (DesignVariable dv : list) {
+			Integer index = indices.get(dv);
+			if (index == null) throw new IOException(dv.getFullName() + " is not in the design variable list");
+			out.writeInt(index);
+		}
+		out.writeInt(item.getChildren().size());
+		for (TreeItem<DesignVariableGroup> child : item.getChildren()) writeTreeItem(out, child, indices);
+	}
+
+	// strings are written once and then referenced by their index, -1 is a new string and -2 is null
+	private void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-2);
+			return;
+		}
+		Integer index = stringIndex.get(value);
+		if (index != null) {
+			out.writeInt(index);
+			return;
+		}
+		stringIndex.put(value, stringIndex.size());
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(-1);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		int index = in.readInt();
+		if (index == -2) return null;
+		if (index >= 0) return strings.get(index);
+		if (index != -1) throw new IOException("bad string index " + index);
+		int length = in.readInt();
+		if ((length < 0) || (length > snapshot.length())) throw new IOException("bad string length " + length);
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		String value = new String(bytes, StandardCharsets.UTF_8);
+		strings.add(value);
+		return value;
+	}
+}
@@ -0,0 +1,582 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import javafx.scene.control.TreeItem;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import static openvsp3plugin.OpenVSP3File.CHOICEVECTOR;
+import static openvsp3plugin.OpenVSP3File.FUSEGEOMPATH;
+import static openvsp3plugin.OpenVSP3File.PROPGEOMPATH;
+import static openvsp3plugin.OpenVSP3File.SUBSURFACES;
+import static openvsp3plugin.OpenVSP3File.USERPARMPATH;
+import static openvsp3plugin.OpenVSP3File.USERPARMS;
+import static openvsp3plugin.OpenVSP3File.WINGGEOMPATH;
+
+/**
+ * This class reads the OpenVSP3 file in a single pass with StAX.
+ * Only the parms OpenVSP3File uses are kept, no DOM is built.
+ * The containers are then added to the OpenVSP3File in the same order,
+ * and with the same xpath strings, as the DOM/XPath reader.
+ */
+class OpenVSP3StreamReader {
+
+	private static final Logger LOG = new Logger(OpenVSP3StreamReader.class.getSimpleName());
+	private static final String XSECPARMS = "ParmContainer/XSec";
+	private static final String CURVEPARMS = "XSec/XSecCurve/ParmContainer/";
+	private static final String[] PROPCURVES = {"Chord", "Rake", "Skew", "Twist"};
+
+	/**
+	 * An element whose child elements are parms, only the name, ID and Value are kept.
+	 * firstIsElement is true if the first DOM child node is a parm and not whitespace.
+	 */
+	private static class ParmGroup {
+		final String name;
+		final ArrayList<String[]> parms = new ArrayList<>();
+		boolean firstIsElement = false;
+
+		ParmGroup(String name) {
+			this.name = name;
+		}
+
+		String getValue(String parm) {
+			for (String[] p : parms) {
+				if (p[0].equals(parm)) return p[2];
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A ParmContainer element, firstGroup is 1 if the DOM reader would skip the first group.
+	 */
+	private static class ParmContainer {
+		String name = null;
+		final ArrayList<ParmGroup> groups = new ArrayList<>();
+		int firstGroup = 0;
+
+		String getValue(String group, String parm, String defaultValue) {
+			for (ParmGroup g : groups) {
+				if (g.name.equals(group)) {
+					String value = g.getValue(parm);
+					if (value != null) return value;
+				}
+			}
+			return defaultValue;
+		}
+	}
+
+	private static class XSec {
+		// keyed by path relative to the XSec element
+		final Map<String, ParmGroup> groups = new HashMap<>();
+		String choiceVec = null;
+	}
+
+	private static class SubSurface {
+		String type = null;
+		final Map<String, ParmGroup> groups = new HashMap<>();
+	}
+
+	private static class Geom {
+		String key = null;
+		ParmContainer parmContainer = null;
+		String typeID = null;
+		// keyed by path relative to the Geom element
+		final Map<String, ParmGroup> groups = new HashMap<>();
+		// keyed by FuselageGeom, WingGeom or PropellerGeom
+		final Map<String, ArrayList<XSec>> xsecs = new HashMap<>();
+		ParmContainer xsecCurve = null;
+		final ArrayList<SubSurface> subSurfaces = new ArrayList<>();
+	}
+
+	private final OpenVSP3File file;
+	private XMLStreamReader reader;
+	private boolean sawNode; // a text, comment or PI node came before the current child element
+	private MessageDigest digest = null; // set while reading a Geom
+	private final ArrayList<Geom> geoms = new ArrayList<>();
+	private final ArrayList<String[]> userParms = new ArrayList<>();
+	private final ArrayList<String> topLevelNames = new ArrayList<>();
+	private final Map<String, ParmContainer> topLevelContainers = new HashMap<>();
+
+	OpenVSP3StreamReader(OpenVSP3File file) {
+		this.file = file;
+	}
+
+	void read(File input) throws Exception {
+		LOG.trace("read() " + input.getName());
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		try (InputStream is = new BufferedInputStream(new FileInputStream(input))) {
+			reader = factory.createXMLStreamReader(is);
+			try {
+				while (reader.hasNext() && (reader.next() != XMLStreamConstants.START_ELEMENT));
+				if (reader.isStartElement() && reader.getLocalName().equals("Vsp_Geometry")) readRoot();
+			} finally {
+				reader.close();
+			}
+		}
+		LOG.debug(String.format("read() %d Geoms, %d UserParms", geoms.size(), userParms.size()));
+		addContainers();
+	}
+
+	// <editor-fold desc="StAX parsing, each read method returns on the end tag of the current element">
+
+	private void readRoot() throws XMLStreamException {
+		while (nextChildElement()) {
+			String parent = reader.getLocalName();
+			while (nextChildElement()) {
+				String child = reader.getLocalName();
+				if (child.equals("ParmContainer")) {
+					topLevelNames.add(parent);
+					ParmContainer container = readParmContainer();
+					if (!topLevelContainers.containsKey(parent)) topLevelContainers.put(parent, container);
+				} else if (parent.equals("Vehicle") && child.equals("Geom")) {
+					geoms.add(readGeom());
+				} else if (parent.equals("UserParmContainer") && child.equals("UserParm")) {
+					userParms.add(new String[] {attribute("GroupName"), attribute("Name"), attribute("ID"), attribute("Value")});
+					skipElement();
+				} else if (parent.equals("SetNames") && child.equals("Set")) {
+					file.getSetNames().add(readText());
+				} else {
+					skipElement();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The Geom key is a digest of everything the reader keeps (element names, whitespace flags,
+	 * attributes and text) so two Geoms with the same key build the same container.
+	 */
+	private Geom readGeom() throws XMLStreamException {
+		Geom geom = new Geom();
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+		while (nextChildElement()) {
+			String child = reader.getLocalName();
+			switch (child) {
+				case "ParmContainer":
+					if (geom.parmContainer == null) geom.parmContainer = readParmContainer();
+					else skipElement();
+					break;
+				case "GeomBase":
+					while (nextChildElement("TypeID")) {
+						String text = readText();
+						if (geom.typeID == null) geom.typeID = text;
+					}
+					break;
+				case "FuselageGeom":
+				case "WingGeom":
+				case "PropellerGeom":
+					readGeomType(geom, child);
+					break;
+				case "XSecCurve":
+					while (nextChildElement("ParmContainer")) {
+						if (geom.xsecCurve == null) geom.xsecCurve = readParmContainer();
+						else skipElement();
+					}
+					break;
+				case "Geom":
+					while (nextChildElement("SubSurfaces")) {
+						while (nextChildElement("SubSurface")) geom.subSurfaces.add(readSubSurface());
+					}
+					break;
+				default:
+					skipElement();
+			}
+		}
+		geom.key = String.format("%040x", new BigInteger(1, digest.digest()));
+		digest = null;
+		return geom;
+	}
+
+	private void readGeomType(Geom geom, String type) throws XMLStreamException {
+		ArrayList<XSec> xsecs = geom.xsecs.get(type);
+		if (xsecs == null) {
+			xsecs = new ArrayList<>();
+			geom.xsecs.put(type, xsecs);
+		}
+		while (nextChildElement()) {
+			String child = reader.getLocalName();
+			if (child.equals("XSecSurf")) {
+				while (nextChildElement("XSec")) xsecs.add(readXSec());
+			} else if (type.equals("PropellerGeom") && Arrays.asList(PROPCURVES).contains(child)) {
+				// PropellerGeom/Chord/ParmContainer/Chord
+				while (nextChildElement("ParmContainer")) readChildGroups(geom.groups, type + "/" + child + "/ParmContainer/");
+			} else {
+				skipElement();
+			}
+		}
+	}
+
+	private XSec readXSec() throws XMLStreamException {
+		XSec xsec = new XSec();
+		while (nextChildElement()) {
+			switch (reader.getLocalName()) {
+				case "ParmContainer":
+					readChildGroups(xsec.groups, "ParmContainer/");
+					break;
+				case "XSec":
+					while (nextChildElement()) {
+						String child = reader.getLocalName();
+						if (child.equals("XSecCurve")) {
+							while (nextChildElement("ParmContainer")) readChildGroups(xsec.groups, CURVEPARMS);
+						} else if (child.equals("DriverGroup")) {
+							while (nextChildElement("ChoiceVec")) {
+								String text = readText();
+								if (xsec.choiceVec == null) xsec.choiceVec = text;
+							}
+						} else {
+							skipElement();
+						}
+					}
+					break;
+				default:
+					skipElement();
+			}
+		}
+		return xsec;
+	}
+
+	private SubSurface readSubSurface() throws XMLStreamException {
+		SubSurface subSurface = new SubSurface();
+		while (nextChildElement()) {
+			switch (reader.getLocalName()) {
+				case "SubSurfaceInfo":
+					while (nextChildElement("Type")) {
+						String text = readText();
+						if (subSurface.type == null) subSurface.type = text;
+					}
+					break;
+				case "ParmContainer":
+					readChildGroups(subSurface.groups, "");
+					break;
+				default:
+					skipElement();
+			}
+		}
+		return subSurface;
+	}
+
+	private ParmContainer readParmContainer() throws XMLStreamException {
+		ParmContainer container = new ParmContainer();
+		boolean first = true;
+		while (nextChildElement()) {
+			String name = reader.getLocalName();
+			// the DOM reader skips child node 0 which is normally whitespace
+			boolean skipped = first && !sawNode;
+			first = false;
+			if (name.equals("Name")) {
+				String text = readText();
+				if (container.name == null) container.name = text;
+			} else if (name.equals("ID")) {
+				skipElement();
+			} else {
+				if (skipped) container.firstGroup = 1;
+				container.groups.add(readParmGroup(name));
+			}
+		}
+		return container;
+	}
+
+	// keeps the first group for each path like XPathUtil.getElementNode()
+	private void readChildGroups(Map<String, ParmGroup> groups, String path) throws XMLStreamException {
+		while (nextChildElement()) {
+			String name = reader.getLocalName();
+			if (groups.containsKey(path + name)) skipElement();
+			else groups.put(path + name, readParmGroup(name));
+		}
+	}
+
+	private ParmGroup readParmGroup(String name) throws XMLStreamException {
+		ParmGroup group = new ParmGroup(name);
+		while (nextChildElement()) {
+			if (group.parms.isEmpty()) group.firstIsElement = !sawNode;
+			group.parms.add(new String[] {reader.getLocalName(), attribute("ID"), attribute("Value")});
+			skipElement();
+		}
+		return group;
+	}
+
+	/**
+	 * Advances to the next child element, returns false at the end tag of the current element.
+	 */
+	private boolean nextChildElement() throws XMLStreamException {
+		sawNode = false;
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					if (digest != null) {
+						digest.update((byte) (sawNode ? '<' : '['));
+						updateDigest(reader.getLocalName());
+					}
+					return true;
+				case XMLStreamConstants.END_ELEMENT:
+					if (digest != null) digest.update((byte) '>');
+					return false;
+				default:
+					sawNode = true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Advances to the next child element with the given name, skipping any others.
+	 */
+	private boolean nextChildElement(String name) throws XMLStreamException {
+		while (nextChildElement()) {
+			if (reader.getLocalName().equals(name)) return true;
+			skipElement();
+		}
+		return false;
+	}
+
+	private void skipElement() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+		}
+	}
+
+	// same as the DOM getTextContent(), all the descendant text
+	private String readText() throws XMLStreamException {
+		StringBuilder sb = new StringBuilder();
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			} else if ((event == XMLStreamConstants.CHARACTERS) || (event == XMLStreamConstants.CDATA)
+					|| (event == XMLStreamConstants.SPACE)) {
+				sb.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+			}
+		}
+		String text = sb.toString();
+		if (digest != null) updateDigest(text);
+		return text;
+	}
+
+	private String attribute(String name) {
+		String value = reader.getAttributeValue(null, name);
+		if (digest != null) updateDigest(value);
+		return value;
+	}
+
+	private void updateDigest(String value) {
+		if (value == null) {
+			digest.update((byte) 1);
+		} else {
+			digest.update(value.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+	}
+
+	// </editor-fold>
+
+	// <editor-fold desc="Building the containers, these mirror the DOM methods in OpenVSP3File">
+
+	private void addContainers() throws Exception {
+		ArrayList<TreeItem<DesignVariableGroup>> containers = file.getContainerArrayList();
+		containers.add(getUserParmContainer());
+		List<String> keys = new ArrayList<>();
+		for (Geom geom : geoms) keys.add(geom.key);
+		file.addGeomContainers(geoms, keys, this::getGeomContainer);
+		for (String name : topLevelNames) {
+			containers.add(getContainer(topLevelContainers.get(name), "/Vsp_Geometry/" + name + "/ParmContainer"));
+		}
+		for (Geom geom : geoms) {
+			ParmContainer pc = (geom.parmContainer == null) ? new ParmContainer() : geom.parmContainer;
+			file.getNSyms().add(OpenVSP3File.getNSym(XPathUtil.parseInteger(text(geom.typeID)),
+					pc.getValue("Sym", "Sym_Axial_Flag", "0.0"),
+					pc.getValue("Sym", "Sym_Planar_Flag", "0.0"),
+					pc.getValue("Sym", "Sym_Rot_N", "0.0"),
+					pc.getValue("Design", "NumBlade", "0.0")));
+		}
+	}
+
+	private TreeItem<DesignVariableGroup> getUserParmContainer() throws Exception {
+		Map<String, TreeItem<DesignVariableGroup>> map = new HashMap<>();
+		TreeItem<DesignVariableGroup> container = new TreeItem<>(new DesignVariableGroup(USERPARMS));
+		for (int i = 1; i < userParms.size(); i++) {
+			String[] userParm = userParms.get(i);
+			String groupName = userParm[0];
+			if (groupName != null) {
+				TreeItem<DesignVariableGroup> group = map.get(groupName);
+				if (group == null) {
+					group = new TreeItem<>(new DesignVariableGroup(groupName));
+					map.put(groupName, group);
+					container.getChildren().add(group);
+				}
+				file.addDesignVariable(container, group, text(userParm[1]), text(userParm[2]), text(userParm[3]),
+						USERPARMPATH + "[" + i + "]", false);
+			}
+		}
+		return container;
+	}
+
+	private TreeItem<DesignVariableGroup> getGeomContainer(Geom geom, String prefix) throws Exception {
+		TreeItem<DesignVariableGroup> container = getContainer(geom.parmContainer, prefix + "ParmContainer");
+		int type = XPathUtil.parseInteger(text(geom.typeID));
+		List<XSec> xsecs;
+		switch (type) {
+			case 4: // fuselage
+			case 8: // stack
+				xsecs = getXSecs(geom, "FuselageGeom");
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "Cap", CURVEPARMS + "Cap");
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "Close", CURVEPARMS + "Close");
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "Trim", CURVEPARMS + "Trim");
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "XSecCurve", CURVEPARMS + "XSecCurve");
+				addGroups(container, xsecs, prefix + FUSEGEOMPATH, "XSec", XSECPARMS);
+				break;
+			case 5: // wing
+				xsecs = getXSecs(geom, "WingGeom");
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "Cap", CURVEPARMS + "Cap");
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "Close", CURVEPARMS + "Close");
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "LowerCoeff", CURVEPARMS + "LowerCoeff");
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "Trim", CURVEPARMS + "Trim");
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "UpperCoeff", CURVEPARMS + "UpperCoeff");
+				addGroups(container, xsecs, prefix + WINGGEOMPATH, "XSecCurve", CURVEPARMS + "XSecCurve");
+				addWingSections(container, xsecs, prefix + WINGGEOMPATH, "XSec", XSECPARMS);
+				break;
+			case 11:
+				for (String curve : PROPCURVES) {
+					String path = "PropellerGeom/" + curve + "/ParmContainer/" + curve;
+					ParmGroup parms = geom.groups.get(path);
+					if (parms != null) addGroup(container, parms.name, parms, prefix + path);
+				}
+				xsecs = getXSecs(geom, "PropellerGeom");
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "Cap", CURVEPARMS + "Cap");
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "Close", CURVEPARMS + "Close");
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "Trim", CURVEPARMS + "Trim");
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "XSecCurve", CURVEPARMS + "XSecCurve");
+				addGroups(container, xsecs, prefix + PROPGEOMPATH, "XSec", XSECPARMS);
+				break;
+			case 15:
+				addContainer(container, geom.xsecCurve, prefix + "XSecCurve/ParmContainer");
+				break;
+		}
+		// sub surfaces
+		int[] counters = new int[SUBSURFACES.length];
+		for (int i = 0; i < SUBSURFACES.length; i++) counters[i] = 1;
+		for (int i = 1; i <= geom.subSurfaces.size(); i++) {
+			SubSurface subSurface = geom.subSurfaces.get(i - 1);
+			String sspPrefix = prefix + "Geom/SubSurfaces/SubSurface[" + i + "]/ParmContainer";
+			int ssType = XPathUtil.parseInteger(text(subSurface.type));
+			String name = SUBSURFACES[ssType] + "_" + counters[ssType]++;
+			ParmGroup parms = subSurface.groups.get(SUBSURFACES[ssType]);
+			if (parms == null) throw new Exception("Could not find " + sspPrefix + "/" + SUBSURFACES[ssType]);
+			addGroup(container, name, parms, sspPrefix + "/" + parms.name);
+		}
+		return container;
+	}
+
+	private TreeItem<DesignVariableGroup> getContainer(ParmContainer parmContainer, String prefix) throws Exception {
+		String name = ((parmContainer == null) || (parmContainer.name == null)) ? "" : parmContainer.name;
+		TreeItem<DesignVariableGroup> container = new TreeItem<>(new DesignVariableGroup(name));
+		addContainer(container, parmContainer, prefix);
+		if (name.equals("CFDMeshSettings")) file.addCFDFileContainer(container);
+		return container;
+	}
+
+	private void addContainer(TreeItem<DesignVariableGroup> container, ParmContainer parmContainer, String prefix) throws Exception {
+		if (parmContainer == null) throw new Exception("Could not find " + prefix);
+		for (int i = parmContainer.firstGroup; i < parmContainer.groups.size(); i++) {
+			ParmGroup parms = parmContainer.groups.get(i);
+			addGroup(container, parms.name, parms, prefix + "/" + parms.name);
+		}
+	}
+
+	private void addWingSections(TreeItem<DesignVariableGroup> container, List<XSec> xsecs, String prefix, String name, String path) throws Exception {
+		for (int i = 1; i <= xsecs.size(); i++) {
+			XSec xsec = xsecs.get(i - 1);
+			String sectionPrefix = prefix + "[" + i + "]/";
+			TreeItem<DesignVariableGroup> group = new TreeItem<>(new DesignVariableGroup(name + "_" + (i - 1)));
+			ParmGroup parms = xsec.groups.get(path);
+			String driverstring = text(xsec.choiceVec);
+			if (parms != null) {
+				HashSet<String> outputs = new HashSet<>();
+				for (int j = 0; j < CHOICEVECTOR.length; j++) {
+					if (!driverstring.contains(String.format("%d",j)))
+						outputs.add(CHOICEVECTOR[j]);
+				}
+				// the DOM reader skips child node 0 which is normally whitespace
+				for (int j = parms.firstIsElement ? 1 : 0; j < parms.parms.size(); j++) {
+					String[] parm = parms.parms.get(j);
+					file.addDesignVariable(container, group, parm[0], text(parm[1]), text(parm[2]),
+							sectionPrefix + path + "/" + parm[0], outputs.contains(parm[0]));
+				}
+			}
+			container.getChildren().add(group);
+		}
+	}
+
+	private void addGroups(TreeItem<DesignVariableGroup> container, List<XSec> xsecs, String prefix, String name, String path) throws Exception {
+		for (int i = 1; i <= xsecs.size(); i++) {
+			ParmGroup parms = xsecs.get(i - 1).groups.get(path);
+			if (parms != null) {
+				// the DOM reader's xpath has a double slash here
+				addGroup(container, name + "_" + (i - 1), parms, prefix + "[" + i + "]//" + path);
+			}
+		}
+	}
+
+	private void addGroup(TreeItem<DesignVariableGroup> container, String name, ParmGroup parms, String xpath) throws Exception {
+		TreeItem<DesignVariableGroup> group = new TreeItem<>(new DesignVariableGroup(name));
+		for (String[] parm : parms.parms) {
+			file.addDesignVariable(container, group, parm[0], text(parm[1]), text(parm[2]), xpath + "/" + parm[0], false);
+		}
+		container.getChildren().add(group);
+	}
+
+	private List<XSec> getXSecs(Geom geom, String type) {
+		List<XSec> xsecs = geom.xsecs.get(type);
+		return (xsecs == null) ? Collections.<XSec>emptyList() : xsecs;
+	}
+
+	// missing elements and attributes are empty strings in the DOM reader
+	private static String text(String value) {
+		return (value == null) ? "" : value;
+	}
+
+	// </editor-fold>
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package openvsp3plugin;
+
+/**
+ * This class is an OpenVSP run that did not finish, the reason lets a driver tell
+ * a hung or cancelled run from a bad design point and move on to the next one.
+ */
+class OpenVSPFailure extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	enum Reason {TIMEOUT, CANCELLED, ERROR_OUTPUT, ERROR};
+
+	private final Reason reason;
+	private final long elapsedMillis;
+	private final String output;
+
+	OpenVSPFailure(Reason reason, String message, long elapsedMillis) {
+		this(reason, message, elapsedMillis, null);
+	}
+
+	OpenVSPFailure(Reason reason, String message, long elapsedMillis, String output) {
+		super(message);
+		this.reason = reason;
+		this.elapsedMillis = elapsedMillis;
+		this.output = output;
+	}
+
+	Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * Returns how long the run took before it was stopped.
+	 */
+	long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * Returns the last lines OpenVSP printed before it was stopped or null if they were not captured.
+	 */
+	String getOutput() {
+		return output;
+	}
+
+	/**
+	 * Returns the reason for any exception from a run, exceptions that are not an OpenVSPFailure are ERROR.
+	 */
+	static Reason getReason(Exception ex) {
+		if (ex instanceof OpenVSPFailure) return ((OpenVSPFailure) ex).getReason();
+		return Reason.ERROR;
+	}
+}
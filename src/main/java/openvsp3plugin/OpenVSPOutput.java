@@ -0,0 +1,120 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package openvsp3plugin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * This class reads the output of an OpenVSP process on its own thread and keeps the last outputLines lines.
+ * The lines the generated scripts print for OpenVSP errors start with ERRORPREFIX and are kept separately,
+ * a line that matches the errorPattern setting is the failure and the supervisor stops the run.
+ */
+class OpenVSPOutput {
+
+	static final String ERRORPREFIX = "OpenVSP3Plugin error: ";
+	private static final Logger LOG = new Logger(OpenVSPOutput.class.getSimpleName());
+	private static Integer outputLines = Integer.getInteger("OpenVSP3Plugin.outputLines", 200);
+	private static Pattern errorPattern = compile(System.getProperty("OpenVSP3Plugin.errorPattern"));
+	private final ArrayDeque<String> lines = new ArrayDeque<>();
+	private final List<String> errors = new ArrayList<>();
+	private final Thread reader;
+	private volatile String failure = null;
+
+	public static void setOutputLines(Integer outputLines) {
+		OpenVSPOutput.outputLines = outputLines;
+	}
+
+	public static void setErrorPattern(String errorPattern) {
+		OpenVSPOutput.errorPattern = compile(errorPattern);
+	}
+
+	private static Pattern compile(String regex) {
+		if ((regex == null) || regex.isEmpty()) return null;
+		return Pattern.compile(regex);
+	}
+
+	/**
+	 * Returns the script statement that prints an error so it is recognized, indent is the script indent.
+	 */
+	static String getPrintError(String indent) {
+		return indent + "Print( \"" + ERRORPREFIX + "\" + err.GetErrorString() );";
+	}
+
+	/**
+	 * Starts reading in, the stream is read until the process closes it.
+	 */
+	OpenVSPOutput(InputStream in, String name) {
+		reader = new Thread(() -> read(in), "OpenVSPOutput " + name);
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void read(InputStream in) {
+		Pattern pattern = errorPattern;
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(in))) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				synchronized (this) {
+					if (lines.size() >= Math.max(1, outputLines)) lines.removeFirst();
+					lines.addLast(line);
+					if (line.startsWith(ERRORPREFIX) && (errors.size() < Math.max(1, outputLines))) {
+						errors.add(line.substring(ERRORPREFIX.length()));
+					}
+				}
+				if ((failure == null) && (pattern != null) && pattern.matcher(line).find()) failure = line;
+			}
+		} catch (IOException ex) {
+			// the stream is closed when the process is killed
+			LOG.trace("read() " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Waits for the rest of the output after the process has exited.
+	 */
+	void join(long millis) throws InterruptedException {
+		reader.join(millis);
+	}
+
+	/**
+	 * Returns the first line that matched the errorPattern setting or null.
+	 */
+	String getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Returns the errors the script printed.
+	 */
+	synchronized List<String> getErrors() {
+		return new ArrayList<>(errors);
+	}
+
+	/**
+	 * Returns the last outputLines lines.
+	 */
+	synchronized String getText() {
+		return String.join("\n", lines);
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package openvsp3plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class runs items through a series of stages, each with its own threads,
+ * with a bounded queue between stages so a stage can work on the next item while
+ * the following stage works on the previous one.
+ * The stages are expected to record their own failures in the item, every item reaches the last stage.
+ */
+class OpenVSPPipeline<T> {
+
+	private static final Logger LOG = new Logger(OpenVSPPipeline.class.getSimpleName());
+	private static final Object END = new Object();
+	private final List<Stage<T>> stages = new ArrayList<>();
+	private final int capacity;
+	private long elapsedNanos = 0;
+
+	/**
+	 * Processes one item, called on the stage threads.
+	 */
+	interface Task<T> {
+		void process(T item);
+	}
+
+	private static class Stage<T> {
+		final String name;
+		final int threads;
+		final Task<T> task;
+		final AtomicLong busyNanos = new AtomicLong();
+		final AtomicLong blockedNanos = new AtomicLong();
+		final AtomicLong items = new AtomicLong();
+		final AtomicInteger running = new AtomicInteger();
+		BlockingQueue<Object> input;
+		BlockingQueue<Object> output;
+
+		Stage(String name, int threads, Task<T> task) {
+			this.name = name;
+			this.threads = threads;
+			this.task = task;
+		}
+	}
+
+	/**
+	 * capacity is the number of items that may wait between two stages.
+	 */
+	OpenVSPPipeline(int capacity) {
+		this.capacity = Math.max(1, capacity);
+	}
+
+	OpenVSPPipeline<T> addStage(String name, int threads, Task<T> task) {
+		stages.add(new Stage<>(name, Math.max(1, threads), task));
+		return this;
+	}
+
+	/**
+	 * Runs all the items through the stages and returns when the last stage has processed them all.
+	 */
+	void run(List<T> items) throws InterruptedException {
+		long start = System.nanoTime();
+		BlockingQueue<Object> input = new LinkedBlockingQueue<>(items);
+		input.add(END);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < stages.size(); i++) {
+			Stage<T> stage = stages.get(i);
+			stage.input = input;
+			stage.output = (i == stages.size() - 1) ? null : new ArrayBlockingQueue<>(capacity);
+			stage.running.set(stage.threads);
+			for (int t = 0; t < stage.threads; t++) {
+				Thread thread = new Thread(() -> runStage(stage), "OpenVSPPipeline " + stage.name + " " + t);
+				thread.setDaemon(true);
+				threads.add(thread);
+				thread.start();
+			}
+			input = stage.output;
+		}
+		try {
+			for (Thread thread : threads) thread.join();
+		} finally {
+			for (Thread thread : threads) thread.interrupt();
+			elapsedNanos += System.nanoTime() - start;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void runStage(Stage<T> stage) {
+		try {
+			while (true) {
+				Object item = stage.input.take();
+				if (item == END) {
+					// let the other threads of this stage see the end, the last one passes it on
+					stage.input.put(END);
+					if ((stage.running.decrementAndGet() == 0) && (stage.output != null)) stage.output.put(END);
+					return;
+				}
+				long start = System.nanoTime();
+				try {
+					stage.task.process((T) item);
+				} catch (RuntimeException ex) {
+					LOG.warn("runStage() - " + stage.name + " " + ex.toString());
+				}
+				stage.items.incrementAndGet();
+				long done = System.nanoTime();
+				stage.busyNanos.addAndGet(done - start);
+				if (stage.output != null) {
+					stage.output.put(item);
+					stage.blockedNanos.addAndGet(System.nanoTime() - done);
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns for each stage the items processed and the percentage of its thread time spent processing
+	 * and waiting for room in the next queue, the stage with the highest busy percentage is the bottleneck.
+	 */
+	String getStatistics() {
+		StringBuilder sb = new StringBuilder();
+		for (Stage<T> stage : stages) {
+			double available = Math.max(1, elapsedNanos) * (double) stage.threads;
+			if (sb.length() > 0) sb.append(", ");
+			sb.append(String.format("%s %d items %d threads %.1f%% busy %.1f%% blocked", stage.name, stage.items.get(), stage.threads,
+					100.0 * stage.busyNanos.get() / available, 100.0 * stage.blockedNanos.get() / available));
+		}
+		return sb.toString();
+	}
+}
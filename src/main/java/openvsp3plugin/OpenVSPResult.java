@@ -0,0 +1,102 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.util.Map;
+
+/**
+ * This class is the result of one batch evaluation,
+ * the output values by design variable full name or the error if the evaluation failed.
+ * A numeric batch has the output numbers in AnalysisPlan.getOutputs() order instead of the names and strings.
+ */
+class OpenVSPResult {
+
+	private final int index;
+	private final Map<String, String> outputs;
+	private final double[] values;
+	private final String error;
+	private final OpenVSPFailure.Reason reason;
+	private final String output;
+
+	OpenVSPResult(int index, Map<String, String> outputs, String error) {
+		this.index = index;
+		this.outputs = outputs;
+		this.values = null;
+		this.error = error;
+		this.reason = (error == null) ? null : OpenVSPFailure.Reason.ERROR;
+		this.output = null;
+	}
+
+	OpenVSPResult(int index, double[] values) {
+		this.index = index;
+		this.outputs = null;
+		this.values = values;
+		this.error = null;
+		this.reason = null;
+		this.output = null;
+	}
+
+	OpenVSPResult(int index, Exception failure) {
+		this.index = index;
+		this.outputs = null;
+		this.values = null;
+		this.error = failure.toString();
+		this.reason = OpenVSPFailure.getReason(failure);
+		this.output = (failure instanceof OpenVSPFailure) ? ((OpenVSPFailure) failure).getOutput() : null;
+	}
+
+	/**
+	 * Returns the position of the input vector in the batch.
+	 */
+	int getIndex() {
+		return index;
+	}
+
+	Map<String, String> getOutputs() {
+		return outputs;
+	}
+
+	/**
+	 * Returns the output numbers of a numeric batch, NaN for File outputs and values that are not numbers.
+	 */
+	double[] getValues() {
+		return values;
+	}
+
+	String getError() {
+		return error;
+	}
+
+	/**
+	 * Returns why the evaluation failed or null if it did not.
+	 */
+	OpenVSPFailure.Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * Returns the OpenVSP output captured when the run failed, null if there is none.
+	 */
+	String getOutput() {
+		return output;
+	}
+
+	boolean isOk() {
+		return error == null;
+	}
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class caches the OpenVSP output files of an evaluation by a fingerprint of the baseline vsp3 file,
+ * the des file, the set ID, nApplyDes and the requested outputs, so a repeated point does not start OpenVSP.
+ * The files are kept in memory up to cacheMemoryMB and in cacheDirectory up to cacheDiskMB,
+ * the least recently used entries are evicted first.
+ * With cacheDigits the des values are rounded to that many significant digits in the fingerprint.
+ * With analysisCache the output files of each expensive analysis are also cached by only the des lines
+ * that analysis depends on, see OpenVSP3Plugin.withResultCache().
+ */
+class OpenVSPResultCache {
+
+	private static final Logger LOG = new Logger(OpenVSPResultCache.class.getSimpleName());
+	private static Boolean cache = Boolean.getBoolean("OpenVSP3Plugin.cache");
+	private static Boolean analysisCache = Boolean.getBoolean("OpenVSP3Plugin.analysisCache");
+	private static Integer cacheMemoryMB = Integer.getInteger("OpenVSP3Plugin.cacheMemoryMB", 64);
+	private static String cacheDirectory = System.getProperty("OpenVSP3Plugin.cacheDirectory");
+	private static Integer cacheDiskMB = Integer.getInteger("OpenVSP3Plugin.cacheDiskMB", 1024);
+	private static Integer cacheDigits = Integer.getInteger("OpenVSP3Plugin.cacheDigits", 0);
+	private static OpenVSPResultCache instance = null;
+	private final LinkedHashMap<String, Map<String, byte[]>> memory = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, String> baselineHashes = new HashMap<>();
+	private long memoryBytes = 0;
+	private long hits = 0;
+	private long diskHits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * Returns the shared cache or null if cache and analysisCache are false.
+	 */
+	static synchronized OpenVSPResultCache getCache() {
+		if (!cache && !analysisCache) return null;
+		if (instance == null) instance = new OpenVSPResultCache();
+		return instance;
+	}
+
+	public static void setCache(Boolean cache) {
+		OpenVSPResultCache.cache = cache;
+	}
+
+	public static void setAnalysisCache(Boolean analysisCache) {
+		OpenVSPResultCache.analysisCache = analysisCache;
+	}
+
+	public static void setCacheMemoryMB(Integer cacheMemoryMB) {
+		OpenVSPResultCache.cacheMemoryMB = cacheMemoryMB;
+	}
+
+	public static void setCacheDirectory(String cacheDirectory) {
+		OpenVSPResultCache.cacheDirectory = cacheDirectory;
+	}
+
+	public static void setCacheDiskMB(Integer cacheDiskMB) {
+		OpenVSPResultCache.cacheDiskMB = cacheDiskMB;
+	}
+
+	public static void setCacheDigits(Integer cacheDigits) {
+		OpenVSPResultCache.cacheDigits = cacheDigits;
+	}
+
+	/**
+	 * Returns true if whole evaluations are cached.
+	 */
+	boolean cachesResults() {
+		return cache;
+	}
+
+	/**
+	 * Returns true if each analysis is cached by the inputs it depends on.
+	 */
+	boolean cachesAnalyses() {
+		return analysisCache;
+	}
+
+	/**
+	 * Returns the part of the fingerprint that is the same for every point of a PluginState.
+	 * It includes the OpenVSP executable and its version so results of an older OpenVSP in cacheDirectory are not used.
+	 */
+	synchronized String getContext(File openVSPExe, File baseline, int setID, int nApplyDes, List<DesignVariable> outputs) throws Exception {
+		String exe = openVSPExe.getAbsolutePath() + "|" + openVSPExe.length() + "|" + openVSPExe.lastModified()
+				+ "|" + OpenVSPVersion.getVersion(openVSPExe.getPath());
+		String id = baseline.getAbsolutePath() + "|" + baseline.length() + "|" + baseline.lastModified();
+		String hash = baselineHashes.get(id);
+		if (hash == null) {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[65536];
+			try (InputStream is = new FileInputStream(baseline)) {
+				int n;
+				while ((n = is.read(buffer)) > 0) md.update(buffer, 0, n);
+			}
+			hash = toHex(md.digest());
+			baselineHashes.put(id, hash);
+		}
+		List<String> names = new ArrayList<>();
+		for (DesignVariable dv : outputs) names.add(dv.getId() + ":" + dv.getFullName());
+		names.sort(Comparator.naturalOrder());
+		return String.format("%s|%s|%s|%d|%d|%s", OpenVSP3Plugin.VERSION, exe, hash, setID, nApplyDes, String.join(",", names));
+	}
+
+	/**
+	 * Returns the fingerprint of the context and the des file lines.
+	 */
+	String getFingerprint(String context, List<String> lines) throws Exception {
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		md.update(context.getBytes(StandardCharsets.UTF_8));
+		for (String line : lines) {
+			md.update((quantize(line) + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		return toHex(md.digest());
+	}
+
+	private static String quantize(String line) {
+		if (cacheDigits < 1) return line;
+		int index = line.lastIndexOf(": ");
+		if (index < 0) return line;
+		try {
+			BigDecimal value = new BigDecimal(line.substring(index + 2).trim()).round(new MathContext(cacheDigits));
+			return line.substring(0, index + 2) + value.stripTrailingZeros().toString();
+		} catch (NumberFormatException ex) {
+			return line;
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
+
+	/**
+	 * Returns true if the files for the fingerprint were written to directory.
+	 */
+	boolean restore(String fingerprint, File directory) throws IOException {
+		Map<String, byte[]> files;
+		synchronized (this) {
+			files = memory.get(fingerprint);
+			if (files != null) hits++;
+		}
+		if (files == null) {
+			files = readDisk(fingerprint);
+			synchronized (this) {
+				if (files == null) {
+					misses++;
+				} else {
+					diskHits++;
+					addMemory(fingerprint, files);
+				}
+			}
+		}
+		LOG.debug("restore() " + getStatistics());
+		if (files == null) return false;
+		for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+			Files.write(new File(directory, entry.getKey()).toPath(), entry.getValue());
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the files in directory that exist to the cache,
+	 * nothing is added unless OpenVSP wrote the first file (the vsp3 file).
+	 */
+	void store(String fingerprint, File directory, List<String> names) throws IOException {
+		if (names.isEmpty() || !new File(directory, names.get(0)).isFile()) return;
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		for (String name : names) {
+			File file = new File(directory, name);
+			if (file.isFile()) files.put(name, Files.readAllBytes(file.toPath()));
+		}
+		synchronized (this) {
+			addMemory(fingerprint, files);
+		}
+		writeDisk(fingerprint, files);
+	}
+
+	private void addMemory(String fingerprint, Map<String, byte[]> files) {
+		long limit = cacheMemoryMB * 1024L * 1024L;
+		long size = size(files);
+		if (size > limit) return;
+		Map<String, byte[]> old = memory.put(fingerprint, files);
+		if (old != null) memoryBytes -= size(old);
+		memoryBytes += size;
+		Iterator<Map<String, byte[]>> it = memory.values().iterator();
+		while ((memoryBytes > limit) && it.hasNext()) {
+			memoryBytes -= size(it.next());
+			it.remove();
+			evictions++;
+		}
+	}
+
+	private static long size(Map<String, byte[]> files) {
+		long size = 0;
+		for (byte[] bytes : files.values()) size += bytes.length;
+		return size;
+	}
+
+	private Map<String, byte[]> readDisk(String fingerprint) {
+		if (cacheDirectory == null) return null;
+		File entry = new File(cacheDirectory, fingerprint);
+		File[] list = entry.listFiles();
+		if (list == null) return null;
+		try {
+			Map<String, byte[]> files = new LinkedHashMap<>();
+			for (File file : list) files.put(file.getName(), Files.readAllBytes(file.toPath()));
+			// the directory time is the least recently used order
+			entry.setLastModified(System.currentTimeMillis());
+			return files;
+		} catch (IOException ex) {
+			LOG.warn("readDisk() " + fingerprint + " " + ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the entry to a temporary directory and renames it so a reader never sees a partial entry.
+	 */
+	private void writeDisk(String fingerprint, Map<String, byte[]> files) {
+		if (cacheDirectory == null) return;
+		File directory = new File(cacheDirectory);
+		File entry = new File(directory, fingerprint);
+		if (entry.isDirectory()) return;
+		File tmp = null;
+		try {
+			Files.createDirectories(directory.toPath());
+			tmp = Files.createTempDirectory(directory.toPath(), "tmp").toFile();
+			for (Map.Entry<String, byte[]> file : files.entrySet()) {
+				Files.write(new File(tmp, file.getKey()).toPath(), file.getValue());
+			}
+			Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			tmp = null;
+		} catch (IOException ex) {
+			LOG.warn("writeDisk() " + fingerprint + " " + ex);
+		} finally {
+			if (tmp != null) delete(tmp);
+		}
+		evictDisk(directory);
+	}
+
+	private synchronized void evictDisk(File directory) {
+		File[] entries = directory.listFiles(file -> file.isDirectory() && !file.getName().startsWith("tmp"));
+		if (entries == null) return;
+		long limit = cacheDiskMB * 1024L * 1024L;
+		long total = 0;
+		Map<File, Long> sizes = new HashMap<>();
+		for (File entry : entries) {
+			long size = 0;
+			File[] files = entry.listFiles();
+			if (files != null) {
+				for (File file : files) size += file.length();
+			}
+			sizes.put(entry, size);
+			total += size;
+		}
+		Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+		for (int i = 0; (total > limit) && (i < entries.length); i++) {
+			total -= sizes.get(entries[i]);
+			delete(entries[i]);
+			evictions++;
+		}
+	}
+
+	private static void delete(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) file.delete();
+		}
+		directory.delete();
+	}
+
+	synchronized String getStatistics() {
+		long lookups = hits + diskHits + misses;
+		return String.format("%d hits (%d from disk) %d misses %.1f%% hit rate, %d entries %d bytes in memory, %d evictions",
+				hits + diskHits, diskHits, misses, (lookups == 0) ? 0.0 : 100.0 * (hits + diskHits) / lookups, memory.size(), memoryBytes, evictions);
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package openvsp3plugin;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class runs the OpenVSP processes of one plugin with a wall clock budget and cancellation.
+ * The budget is the setting for each analysis in the plan plus the optional timeout setting, for each point.
+ * A process that runs past its budget, is cancelled or prints a line matching the errorPattern setting
+ * is killed and the run fails with an OpenVSPFailure that has the last lines of its output.
+ * Java 8 can not list child processes, OpenVSP does not start any when running a script.
+ */
+class OpenVSPSupervisor {
+
+	private static final Logger LOG = new Logger(OpenVSPSupervisor.class.getSimpleName());
+	private static final long POLLMILLIS = 100;
+	private static Integer timeout = Integer.getInteger("OpenVSP3Plugin.timeout", 0);
+	private static Integer timeoutExport = Integer.getInteger("OpenVSP3Plugin.timeoutExport", 60);
+	private static Integer timeoutDegenGeom = Integer.getInteger("OpenVSP3Plugin.timeoutDegenGeom", 60);
+	private static Integer timeoutCompGeom = Integer.getInteger("OpenVSP3Plugin.timeoutCompGeom", 120);
+	private static Integer timeoutMassProp = Integer.getInteger("OpenVSP3Plugin.timeoutMassProp", 120);
+	private static Integer timeoutCFDMesh = Integer.getInteger("OpenVSP3Plugin.timeoutCFDMesh", 600);
+	private final Set<Process> processes = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private volatile boolean cancelled = false;
+
+	public static void setTimeout(Integer timeout) {
+		OpenVSPSupervisor.timeout = timeout;
+	}
+
+	public static void setTimeoutExport(Integer timeoutExport) {
+		OpenVSPSupervisor.timeoutExport = timeoutExport;
+	}
+
+	public static void setTimeoutDegenGeom(Integer timeoutDegenGeom) {
+		OpenVSPSupervisor.timeoutDegenGeom = timeoutDegenGeom;
+	}
+
+	public static void setTimeoutCompGeom(Integer timeoutCompGeom) {
+		OpenVSPSupervisor.timeoutCompGeom = timeoutCompGeom;
+	}
+
+	public static void setTimeoutMassProp(Integer timeoutMassProp) {
+		OpenVSPSupervisor.timeoutMassProp = timeoutMassProp;
+	}
+
+	public static void setTimeoutCFDMesh(Integer timeoutCFDMesh) {
+		OpenVSPSupervisor.timeoutCFDMesh = timeoutCFDMesh;
+	}
+
+	/**
+	 * Returns the budget for running plan for the number of points, 0 if every setting it adds up is 0.
+	 */
+	static long getBudgetMillis(AnalysisPlan plan, int points) {
+		long seconds = Math.max(0, timeout);
+		for (AnalysisPlan.Analysis analysis : plan.getAnalyses()) seconds += Math.max(0, getSeconds(analysis.getType()));
+		if (seconds < 1) return 0;
+		return seconds * 1000L * Math.max(1, points);
+	}
+
+	/**
+	 * Returns the budget for a script that only runs one analysis, 0 if both settings are 0.
+	 */
+	static long getBudgetMillis(AnalysisPlan.Type type) {
+		long seconds = Math.max(0, timeout) + Math.max(0, getSeconds(type));
+		if (seconds < 1) return 0;
+		return seconds * 1000L;
+	}
+
+	private static int getSeconds(AnalysisPlan.Type type) {
+		switch (type) {
+			case EXPORT: return timeoutExport;
+			case DEGENGEOM: return timeoutDegenGeom;
+			case COMPGEOM: return timeoutCompGeom;
+			case MASSPROP: return timeoutMassProp;
+			case CFDMESH: return timeoutCFDMesh;
+		}
+		return 0;
+	}
+
+	/**
+	 * Clears an earlier cancel, called when a new run or batch starts.
+	 */
+	void reset() {
+		cancelled = false;
+	}
+
+	/**
+	 * Kills the running OpenVSP processes, runs started before reset() is called fail as CANCELLED.
+	 */
+	void cancel() {
+		LOG.info("cancel() - " + processes.size() + " running");
+		cancelled = true;
+		for (Process process : processes) process.destroyForcibly();
+	}
+
+	boolean isCancelled() {
+		return cancelled;
+	}
+
+	void checkCancelled() throws OpenVSPFailure {
+		if (cancelled) throw new OpenVSPFailure(OpenVSPFailure.Reason.CANCELLED, "OpenVSP run cancelled", 0);
+	}
+
+	/**
+	 * Starts the process and waits for it, budgetMillis 0 waits as long as it takes. Returns the exit code,
+	 * a non-zero exit code fails with an OpenVSPFailure that has the output.
+	 */
+	int run(ProcessBuilder pb, long budgetMillis) throws Exception {
+		checkCancelled();
+		long start = System.currentTimeMillis();
+		Process process = pb.start();
+		processes.add(process);
+		OpenVSPOutput output = new OpenVSPOutput(process.getInputStream(), pb.directory().getName());
+		try {
+			while (!process.waitFor(POLLMILLIS, TimeUnit.MILLISECONDS)) {
+				long elapsed = System.currentTimeMillis() - start;
+				if (cancelled) {
+					kill(process);
+					throw failure(OpenVSPFailure.Reason.CANCELLED, "OpenVSP run cancelled after " + elapsed + " ms", elapsed, output);
+				}
+				if ((budgetMillis > 0) && (elapsed > budgetMillis)) {
+					kill(process);
+					LOG.warn("run() - " + pb.command() + " killed after " + elapsed + " ms");
+					throw failure(OpenVSPFailure.Reason.TIMEOUT, "OpenVSP run timed out after " + elapsed + " ms", elapsed, output);
+				}
+				if (output.getFailure() != null) {
+					kill(process);
+					throw failure(OpenVSPFailure.Reason.ERROR_OUTPUT, "OpenVSP printed " + output.getFailure(), elapsed, output);
+				}
+			}
+			long elapsed = System.currentTimeMillis() - start;
+			output.join(1000);
+			if (cancelled) {
+				throw failure(OpenVSPFailure.Reason.CANCELLED, "OpenVSP run cancelled after " + elapsed + " ms", elapsed, output);
+			}
+			if (output.getFailure() != null) {
+				throw failure(OpenVSPFailure.Reason.ERROR_OUTPUT, "OpenVSP printed " + output.getFailure(), elapsed, output);
+			}
+			for (String error : output.getErrors()) LOG.warn("run() - " + pb.directory().getName() + " OpenVSP error " + error);
+			int exitCode = process.exitValue();
+			if (exitCode != 0) {
+				// e.g. OpenVSP crashed, the output files it did not write would only fail as missing files
+				throw new OpenVSPFailure(OpenVSPFailure.Reason.ERROR, "OpenVSP exited with code " + exitCode, elapsed, output.getText());
+			}
+			return exitCode;
+		} finally {
+			processes.remove(process);
+			if (process.isAlive()) kill(process);
+		}
+	}
+
+	private static OpenVSPFailure failure(OpenVSPFailure.Reason reason, String message, long elapsed, OpenVSPOutput output) throws InterruptedException {
+		// the rest of the output is read after the process is killed
+		output.join(1000);
+		return new OpenVSPFailure(reason, message, elapsed, output.getText());
+	}
+
+	private static void kill(Process process) {
+		process.destroyForcibly();
+		try {
+			process.waitFor(5, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
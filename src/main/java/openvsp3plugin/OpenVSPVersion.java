@@ -0,0 +1,199 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package openvsp3plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class finds the OpenVSP version in the vsp executable, the text "OpenVSP " followed by major.minor.patch.
+ * The executable is read in chunks into one direct buffer and searched with Boyer-Moore-Horspool,
+ * if the text is not found the output of vsp -version is searched instead. It is not memory mapped
+ * because on Windows a mapping keeps vsp.exe from being replaced until the buffer is collected. The versions are kept for the session and in
+ * versionCacheFile by executable path, size and modification time so a new ModelCenter session does not scan again.
+ */
+class OpenVSPVersion {
+
+	static final String UNKNOWN = "Unknown";
+	private static final Logger LOG = new Logger(OpenVSPVersion.class.getSimpleName());
+	private static final byte[] TEXT = "OpenVSP ".getBytes(StandardCharsets.US_ASCII);
+	private static final int CHUNK = 16 * 1024 * 1024;
+	private static final int OVERLAP = 64;
+	private static String versionCacheFile = System.getProperty("OpenVSP3Plugin.versionCacheFile",
+			System.getProperty("user.home") + File.separator + ".OpenVSP3Plugin.versions");
+	private static final Map<String, String> VERSIONS = new HashMap<>();
+
+	public static void setVersionCacheFile(String versionCacheFile) {
+		OpenVSPVersion.versionCacheFile = versionCacheFile;
+	}
+
+	/**
+	 * Returns the version of the executable at path or UNKNOWN.
+	 */
+	static synchronized String getVersion(String path) {
+		File exe = new File(path);
+		if (!exe.isFile()) return UNKNOWN;
+		String key = exe.getAbsolutePath() + "|" + exe.length() + "|" + exe.lastModified();
+		String version = VERSIONS.get(key);
+		if (version != null) return version;
+		Properties cached = readCacheFile();
+		version = cached.getProperty(key);
+		if (version == null) {
+			long start = System.currentTimeMillis();
+			version = scan(exe);
+			if (version == null) version = runVersion(exe);
+			if (version == null) version = UNKNOWN;
+			LOG.info(String.format("getVersion() - %s is %s found in %d ms", path, version, System.currentTimeMillis() - start));
+			if (!version.equals(UNKNOWN)) {
+				cached.setProperty(key, version);
+				writeCacheFile(cached);
+			}
+		}
+		VERSIONS.put(key, version);
+		return version;
+	}
+
+	/**
+	 * Returns the version in the file or null.
+	 */
+	static String scan(File exe) {
+		try (FileChannel channel = FileChannel.open(exe.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(size, CHUNK + OVERLAP));
+			// the chunks overlap so a version that crosses a boundary is found
+			for (long position = 0; position < size; position += CHUNK) {
+				buffer.clear();
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, position + buffer.position()) < 0) break;
+				}
+				buffer.flip();
+				String version = find(buffer);
+				if (version != null) return version;
+			}
+		} catch (Exception ex) {
+			LOG.debug("scan() - " + ex.toString());
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the first "OpenVSP " followed by a version in buffer or null.
+	 */
+	static String find(ByteBuffer buffer) {
+		int[] skip = new int[256];
+		int last = TEXT.length - 1;
+		for (int i = 0; i < skip.length; i++) skip[i] = TEXT.length;
+		for (int i = 0; i < last; i++) skip[TEXT[i] & 0xff] = last - i;
+		int limit = buffer.limit();
+		int position = 0;
+		while (position + last < limit) {
+			int i = last;
+			while ((i >= 0) && (buffer.get(position + i) == TEXT[i])) i--;
+			if (i < 0) {
+				String version = parseVersion(buffer, position + TEXT.length, limit);
+				if (version != null) return version;
+			}
+			position += skip[buffer.get(position + last) & 0xff];
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the major.minor.patch digits at start or null if they are not there.
+	 */
+	private static String parseVersion(ByteBuffer buffer, int start, int limit) {
+		StringBuilder sb = new StringBuilder();
+		int periods = 0;
+		boolean digit = false;
+		for (int i = start; i < limit; i++) {
+			char ch = (char) (buffer.get(i) & 0xff);
+			if (Character.isDigit(ch)) {
+				sb.append(ch);
+				digit = true;
+			} else if ((ch == '.') && digit && (periods < 2)) {
+				sb.append(ch);
+				periods++;
+				digit = false;
+			} else {
+				break;
+			}
+		}
+		return ((periods == 2) && digit) ? sb.toString() : null;
+	}
+
+	/**
+	 * Returns the version printed by vsp -version or null if it does not print one.
+	 */
+	private static String runVersion(File exe) {
+		try {
+			ProcessBuilder pb = new ProcessBuilder(exe.getAbsolutePath(), "-version");
+			pb.redirectErrorStream(true);
+			Process process = pb.start();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (InputStream in = process.getInputStream()) {
+				byte[] bytes = new byte[4096];
+				int n;
+				while ((out.size() < 65536) && ((n = in.read(bytes)) != -1)) out.write(bytes, 0, n);
+			}
+			if (!process.waitFor(10, TimeUnit.SECONDS)) process.destroyForcibly();
+			return find(ByteBuffer.wrap(out.toByteArray()));
+		} catch (Exception ex) {
+			LOG.debug("runVersion() - " + ex.toString());
+			return null;
+		}
+	}
+
+	private static Properties readCacheFile() {
+		Properties properties = new Properties();
+		File file = new File(versionCacheFile);
+		if (file.isFile()) {
+			try (InputStream in = new FileInputStream(file)) {
+				properties.load(in);
+			} catch (Exception ex) {
+				LOG.debug("readCacheFile() - " + ex.toString());
+			}
+		}
+		return properties;
+	}
+
+	private static void writeCacheFile(Properties properties) {
+		File file = new File(versionCacheFile);
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			try (FileOutputStream out = new FileOutputStream(tmp)) {
+				properties.store(out, "OpenVSP3Plugin OpenVSP versions by path|size|modified");
+			}
+			// another ModelCenter may be reading the file
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (Exception ex) {
+			LOG.debug("writeCacheFile() - " + ex.toString());
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a long lived OpenVSP process running a driver script that loops:
+ * wait for requestN.txt in the worker directory, reset to the baseline vsp3 file,
+ * run the commands with dir set to the directory in the request, then write doneN.txt.
+ * A request of "ping" only writes doneN.txt and "exit" ends the script.
+ * The OpenVSP script API can not sleep so the driver polls and uses a core while it waits,
+ * idle workers are stopped by the pool after a few seconds and when a batch ends.
+ * The driver reads and writes files with the AngelScript file add-on, start() pings the new worker
+ * so a vsp without the add-on fails with a clear message instead of on the first evaluation.
+ */
+class OpenVSPWorker {
+
+	private static final Logger LOG = new Logger(OpenVSPWorker.class.getSimpleName());
+	private static final long POLLMILLIS = 5;
+	private static final long STARTMILLIS = 30000;
+	private static final String DONE = "done";
+
+	private final String openVSPExe;
+	private final String driver;
+	private final File directory;
+	private Process process = null;
+	private OpenVSPOutput output = null;
+	private int requests = 0;
+	private int evaluations = 0;
+	private long idleSince = System.currentTimeMillis();
+
+	/**
+	 * driver is the baseline vsp3 file name followed by a newline and the script commands,
+	 * workers can only be reused for the same driver.
+	 */
+	OpenVSPWorker(String openVSPExe, String driver, File directory) {
+		this.openVSPExe = openVSPExe;
+		this.driver = driver;
+		this.directory = directory;
+	}
+
+	String getDriver() {
+		return driver;
+	}
+
+	int getEvaluations() {
+		return evaluations;
+	}
+
+	long getIdleSince() {
+		return idleSince;
+	}
+
+	void setIdle() {
+		idleSince = System.currentTimeMillis();
+	}
+
+	boolean isAlive() {
+		return (process != null) && process.isAlive();
+	}
+
+	void start() throws Exception {
+		LOG.trace("start() " + directory);
+		Files.createDirectories(directory.toPath());
+		writeDriverScript(new File(directory, "OpenVSP3PluginDriver.vspscript"));
+		ProcessBuilder pb = new ProcessBuilder().command(openVSPExe, "-script", "OpenVSP3PluginDriver.vspscript");
+		pb.directory(directory);
+		pb.redirectErrorStream(true);
+		process = pb.start();
+		output = new OpenVSPOutput(process.getInputStream(), directory.getName());
+		try {
+			send("ping", STARTMILLIS, null);
+		} catch (OpenVSPFailure ex) {
+			throw new OpenVSPFailure(ex.getReason(), ex.getMessage()
+					+ " before answering its first request, check that this vsp registers the AngelScript file add-on",
+					ex.getElapsedMillis(), ex.getOutput());
+		}
+	}
+
+	private void writeDriverScript(File file) throws IOException {
+		int index = driver.indexOf('\n');
+		String baseline = driver.substring(0, index).replace("\\", "/");
+		String commands = driver.substring(index + 1);
+		try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+			bw.write("string ReadRequest(const string &in name)"); bw.newLine();
+			bw.write("{"); bw.newLine();
+			bw.write("  file f;"); bw.newLine();
+			bw.write("  if (f.open(name, \"r\") < 0) return \"\";"); bw.newLine();
+			bw.write("  string request = f.readString(f.getSize());"); bw.newLine();
+			bw.write("  f.close();"); bw.newLine();
+			bw.write("  return request;"); bw.newLine();
+			bw.write("}"); bw.newLine();
+			bw.write("void WriteDone(const string &in name)"); bw.newLine();
+			bw.write("{"); bw.newLine();
+			bw.write("  file f;"); bw.newLine();
+			bw.write("  f.open(name, \"w\");"); bw.newLine();
+			bw.write("  f.writeString(\"" + DONE + "\");"); bw.newLine();
+			bw.write("  f.close();"); bw.newLine();
+			bw.write("}"); bw.newLine();
+			bw.write("void main()"); bw.newLine();
+			bw.write("{"); bw.newLine();
+			bw.write("  string workerDir = \"" + directory.getAbsolutePath().replace("\\", "/") + "\";"); bw.newLine();
+			bw.write("  int n = 0;"); bw.newLine();
+			bw.write("  while (true)"); bw.newLine();
+			bw.write("  {"); bw.newLine();
+			bw.write("    string dir = ReadRequest(workerDir + \"/request\" + n + \".txt\");"); bw.newLine();
+			bw.write("    if (dir == \"\") continue;"); bw.newLine();
+			bw.write("    if (dir == \"exit\") return;"); bw.newLine();
+			bw.write("    if (dir != \"ping\")"); bw.newLine();
+			bw.write("    {"); bw.newLine();
+			bw.write("      array<string> meshgeoms;"); bw.newLine();
+			bw.write("      ClearVSPModel();"); bw.newLine();
+			bw.write("      ReadVSPFile(\"" + baseline + "\");"); bw.newLine();
+			bw.write(commands);
+			bw.write("    }"); bw.newLine();
+			bw.write("    while ( GetNumTotalErrors() > 0 )"); bw.newLine();
+			bw.write("    {"); bw.newLine();
+			bw.write("      ErrorObj err = PopLastError();"); bw.newLine();
+			bw.write(OpenVSPOutput.getPrintError("      ")); bw.newLine();
+			bw.write("    }"); bw.newLine();
+			bw.write("    WriteDone(workerDir + \"/done\" + n + \".txt\");"); bw.newLine();
+			bw.write("    n++;"); bw.newLine();
+			bw.write("  }"); bw.newLine();
+			bw.write("}"); bw.newLine();
+		}
+	}
+
+	/**
+	 * Applies the des file in dir to the baseline and runs the commands, the output files are written to dir.
+	 * The worker is stopped if the run times out or supervisor is cancelled.
+	 */
+	void evaluate(File dir, long timeoutMillis, OpenVSPSupervisor supervisor) throws Exception {
+		send(dir.getAbsolutePath().replace("\\", "/"), timeoutMillis, supervisor);
+		evaluations++;
+	}
+
+	/**
+	 * Returns true if the driver answered within the timeout.
+	 */
+	boolean ping(long timeoutMillis) {
+		try {
+			send("ping", timeoutMillis, null);
+			return true;
+		} catch (Exception ex) {
+			LOG.warn("ping() " + directory.getName() + " " + ex.getMessage());
+			return false;
+		}
+	}
+
+	private void send(String request, long timeoutMillis, OpenVSPSupervisor supervisor) throws Exception {
+		File requestFile = writeRequest(request);
+		File doneFile = new File(directory, "done" + requests + ".txt");
+		long start = System.currentTimeMillis();
+		while (doneFile.length() < DONE.length()) {
+			long elapsed = System.currentTimeMillis() - start;
+			if (!isAlive()) {
+				throw new OpenVSPFailure(OpenVSPFailure.Reason.ERROR,
+						String.format("OpenVSP worker %s exited with code %d", directory.getName(), process.exitValue()), elapsed, output.getText());
+			}
+			if ((supervisor != null) && supervisor.isCancelled()) {
+				stop();
+				throw new OpenVSPFailure(OpenVSPFailure.Reason.CANCELLED,
+						String.format("OpenVSP worker %s cancelled after %d ms", directory.getName(), elapsed), elapsed, output.getText());
+			}
+			if (elapsed > timeoutMillis) {
+				stop();
+				throw new OpenVSPFailure(OpenVSPFailure.Reason.TIMEOUT,
+						String.format("OpenVSP worker %s timed out after %d ms", directory.getName(), timeoutMillis), elapsed, output.getText());
+			}
+			if (output.getFailure() != null) {
+				stop();
+				throw new OpenVSPFailure(OpenVSPFailure.Reason.ERROR_OUTPUT,
+						String.format("OpenVSP worker %s printed %s", directory.getName(), output.getFailure()), elapsed, output.getText());
+			}
+			Thread.sleep(POLLMILLIS);
+		}
+		requestFile.delete();
+		doneFile.delete();
+		requests++;
+	}
+
+	private File writeRequest(String request) throws IOException {
+		File requestFile = new File(directory, "request" + requests + ".txt");
+		File tmp = new File(directory, "request.tmp");
+		Files.write(tmp.toPath(), request.getBytes(StandardCharsets.UTF_8));
+		// the driver must never see a partial request
+		Files.move(tmp.toPath(), requestFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		return requestFile;
+	}
+
+	/**
+	 * Asks the driver to exit and kills it if it does not, then deletes the worker directory.
+	 */
+	void stop() {
+		LOG.trace("stop() " + directory.getName());
+		if (isAlive()) {
+			try {
+				writeRequest("exit");
+				if (!process.waitFor(1, TimeUnit.SECONDS)) process.destroyForcibly();
+			} catch (Exception ex) {
+				process.destroyForcibly();
+			}
+		}
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) file.delete();
+		}
+		directory.delete();
+	}
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package openvsp3plugin;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps OpenVSP worker processes alive between evaluations so each run
+ * does not pay for starting OpenVSP and reading the baseline vsp3 file.
+ * Workers are leased for one evaluation and released back to the pool,
+ * a worker is recycled after workerEvaluations evaluations and stopped after workerIdle seconds idle.
+ * Idle workers poll for their next request on a core, so they are also stopped when the last batch ends.
+ */
+class OpenVSPWorkerPool {
+
+	private static final Logger LOG = new Logger(OpenVSPWorkerPool.class.getSimpleName());
+	private static final long PINGMILLIS = 10000;
+	private static Integer workers = Integer.getInteger("OpenVSP3Plugin.workers", 0);
+	private static Integer workerEvaluations = Integer.getInteger("OpenVSP3Plugin.workerEvaluations", 100);
+	private static Integer workerTimeout = Integer.getInteger("OpenVSP3Plugin.workerTimeout", 600);
+	private static Integer workerIdle = Integer.getInteger("OpenVSP3Plugin.workerIdle", 5);
+	private static OpenVSPWorkerPool pool = null;
+	private final List<OpenVSPWorker> idle = new ArrayList<>();
+	private final List<OpenVSPWorker> leased = new ArrayList<>();
+	private int starting = 0;
+	private int batches = 0;
+
+	/**
+	 * Returns the shared pool or null if workers is less than 1.
+	 */
+	static synchronized OpenVSPWorkerPool getPool() {
+		if (workers < 1) return null;
+		if (pool == null) pool = new OpenVSPWorkerPool();
+		return pool;
+	}
+
+	public static void setWorkers(Integer workers) {
+		OpenVSPWorkerPool.workers = workers;
+	}
+
+	public static void setWorkerEvaluations(Integer workerEvaluations) {
+		OpenVSPWorkerPool.workerEvaluations = workerEvaluations;
+	}
+
+	public static void setWorkerTimeout(Integer workerTimeout) {
+		OpenVSPWorkerPool.workerTimeout = workerTimeout;
+	}
+
+	public static void setWorkerIdle(Integer workerIdle) {
+		OpenVSPWorkerPool.workerIdle = workerIdle;
+	}
+
+	static long getTimeoutMillis() {
+		return workerTimeout * 1000L;
+	}
+
+	private OpenVSPWorkerPool() {
+		Thread reaper = new Thread(this::reap, "OpenVSPWorkerPool reaper");
+		reaper.setDaemon(true);
+		reaper.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::stopAll));
+	}
+
+	/**
+	 * Returns a running worker for the baseline vsp3 file and script commands,
+	 * waits if all the workers are leased.
+	 * The pool lock is only held to take a worker or reserve a slot, workers are pinged,
+	 * started and stopped outside it.
+	 */
+	OpenVSPWorker lease(String openVSPExe, String baseline, String commands) throws Exception {
+		String driver = baseline + "\n" + commands;
+		while (true) {
+			OpenVSPWorker worker = null;
+			OpenVSPWorker recycled = null;
+			synchronized (this) {
+				while (true) {
+					worker = takeIdle(driver);
+					if (worker != null) {
+						leased.add(worker);
+						break;
+					}
+					if (idle.size() + leased.size() + starting < workers) {
+						starting++;
+						break;
+					}
+					if (!idle.isEmpty()) {
+						// recycle the least recently used worker for a different driver
+						recycled = idle.remove(0);
+						starting++;
+						break;
+					}
+					wait();
+				}
+			}
+			if (worker == null) {
+				if (recycled != null) recycled.stop();
+				return startWorker(openVSPExe, driver);
+			}
+			if (isHealthy(worker)) return worker;
+			worker.stop();
+			synchronized (this) {
+				leased.remove(worker);
+				notifyAll();
+			}
+		}
+	}
+
+	private OpenVSPWorker takeIdle(String driver) {
+		for (int i = idle.size() - 1; i >= 0; i--) {
+			if (idle.get(i).getDriver().equals(driver)) return idle.remove(i);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the worker to the pool, a worker that failed is stopped.
+	 */
+	void release(OpenVSPWorker worker, boolean ok) {
+		boolean keep = ok && worker.isAlive() && (worker.getEvaluations() < workerEvaluations);
+		if (!keep) worker.stop();
+		synchronized (this) {
+			leased.remove(worker);
+			if (keep) {
+				worker.setIdle();
+				idle.add(worker);
+			}
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Starts a worker in a slot reserved by lease(), the slot is freed if the worker does not start.
+	 */
+	private OpenVSPWorker startWorker(String openVSPExe, String driver) throws Exception {
+		OpenVSPWorker worker = null;
+		try {
+			worker = new OpenVSPWorker(openVSPExe, driver, createWorkerDirectory().toFile());
+			worker.start();
+		} catch (Exception ex) {
+			if (worker != null) worker.stop();
+			synchronized (this) {
+				starting--;
+				notifyAll();
+			}
+			throw ex;
+		}
+		synchronized (this) {
+			starting--;
+			leased.add(worker);
+			LOG.debug(String.format("startWorker() %d leased %d idle", leased.size(), idle.size()));
+		}
+		return worker;
+	}
+
+	synchronized void beginBatch() {
+		batches++;
+	}
+
+	/**
+	 * Stops the idle workers when no other batch is running.
+	 */
+	void endBatch() {
+		List<OpenVSPWorker> stopped = new ArrayList<>();
+		synchronized (this) {
+			batches--;
+			if (batches > 0) return;
+			stopped.addAll(idle);
+			idle.clear();
+			notifyAll();
+		}
+		LOG.debug(String.format("endBatch() stopping %d idle workers", stopped.size()));
+		for (OpenVSPWorker worker : stopped) worker.stop();
+	}
+
+	private static Path createWorkerDirectory() throws Exception {
+		return Files.createTempDirectory(OpenVSPWorkspaces.getWorkspaces().getBase(), "OpenVSP3Worker_");
+	}
+
+	private boolean isHealthy(OpenVSPWorker worker) {
+		if (!worker.isAlive() || (worker.getEvaluations() >= workerEvaluations)) return false;
+		if (System.currentTimeMillis() - worker.getIdleSince() < PINGMILLIS) return true;
+		return worker.ping(PINGMILLIS);
+	}
+
+	private void reap() {
+		while (true) {
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException ex) {
+				return;
+			}
+			List<OpenVSPWorker> expired = new ArrayList<>();
+			synchronized (this) {
+				long now = System.currentTimeMillis();
+				for (int i = idle.size() - 1; i >= 0; i--) {
+					OpenVSPWorker worker = idle.get(i);
+					if (!worker.isAlive() || (now - worker.getIdleSince() > workerIdle * 1000L)) expired.add(idle.remove(i));
+				}
+				if (!expired.isEmpty()) notifyAll();
+			}
+			for (OpenVSPWorker worker : expired) worker.stop();
+		}
+	}
+
+	private void stopAll() {
+		List<OpenVSPWorker> all = new ArrayList<>();
+		synchronized (this) {
+			all.addAll(idle);
+			all.addAll(leased);
+			idle.clear();
+			leased.clear();
+		}
+		for (OpenVSPWorker worker : all) worker.stop();
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2017 United States Government as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * 
+ * All Rights Reserved.
+ * 
+ * The OpenVSP3Plugin platform is licensed under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0. 
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package openvsp3plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class hands out the scratch directories OpenVSP runs in, under workspaceDirectory
+ * (e.g. /dev/shm or a RAM disk) or TMP if it is not set.
+ * Released workspaces are emptied on a background thread and handed out again, they are deleted when the JVM exits,
+ * discarded directories are renamed out of the way at once and deleted on the background thread.
+ * With workspaceQuotaMB set a workspace can not be handed out and a batch group can not start
+ * while the workspaces and the directories waiting to be deleted use more than the quota.
+ */
+class OpenVSPWorkspaces {
+
+	private static final Logger LOG = new Logger(OpenVSPWorkspaces.class.getSimpleName());
+	private static final String TRASH = "OpenVSP3PluginTrash_";
+	private static final int MAXIDLE = 4;
+	private static String workspaceDirectory = System.getProperty("OpenVSP3Plugin.workspaceDirectory");
+	private static Integer workspaceQuotaMB = Integer.getInteger("OpenVSP3Plugin.workspaceQuotaMB", 0);
+	private static OpenVSPWorkspaces workspaces = null;
+	private final Path base;
+	private final Set<File> active = new HashSet<>();
+	private final Deque<File> idle = new ArrayDeque<>();
+	private final Set<File> trash = new HashSet<>();
+	private final AtomicInteger trashCount = new AtomicInteger();
+	private final ExecutorService cleaner = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "OpenVSPWorkspaces cleaner");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private Future<?> lastCleanup = null;
+
+	/**
+	 * Returns the shared workspaces, the location is fixed the first time this is called.
+	 */
+	static synchronized OpenVSPWorkspaces getWorkspaces() throws IOException {
+		if (workspaces == null) workspaces = new OpenVSPWorkspaces(getBaseDirectory());
+		return workspaces;
+	}
+
+	public static void setWorkspaceDirectory(String workspaceDirectory) {
+		OpenVSPWorkspaces.workspaceDirectory = workspaceDirectory;
+	}
+
+	public static void setWorkspaceQuotaMB(Integer workspaceQuotaMB) {
+		OpenVSPWorkspaces.workspaceQuotaMB = workspaceQuotaMB;
+	}
+
+	private static Path getBaseDirectory() {
+		String tmp = workspaceDirectory;
+		if ((tmp == null) || tmp.isEmpty()) tmp = System.getenv("TMP");
+		if (tmp == null) tmp = System.getProperty("java.io.tmpdir");
+		return Paths.get(tmp);
+	}
+
+	private OpenVSPWorkspaces(Path base) throws IOException {
+		this.base = base;
+		Files.createDirectories(base);
+		LOG.info("OpenVSPWorkspaces() - " + base);
+		// directories left by a session that ended before its cleanup finished
+		File[] stale = base.toFile().listFiles((dir, name) -> name.startsWith(TRASH));
+		if (stale != null) {
+			for (File directory : stale) cleanup(directory);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(this::deleteIdle));
+	}
+
+	/**
+	 * Deletes the idle workspaces when the JVM exits, the active ones belong to plugins that did not end.
+	 */
+	private void deleteIdle() {
+		try {
+			waitForCleanup();
+		} catch (Exception ex) {
+			LOG.warn("deleteIdle() - " + ex);
+		}
+		synchronized (this) {
+			for (File workspace : idle) deleteRecursively(workspace);
+			idle.clear();
+		}
+	}
+
+	Path getBase() {
+		return base;
+	}
+
+	/**
+	 * Returns an empty workspace, an idle one if there is one otherwise a new directory named prefix followed by a number.
+	 */
+	File acquire(String prefix) throws Exception {
+		checkQuota();
+		synchronized (this) {
+			File workspace = idle.pollFirst();
+			if (workspace == null) workspace = Files.createTempDirectory(base, prefix).toFile();
+			active.add(workspace);
+			LOG.debug("acquire() " + workspace);
+			return workspace;
+		}
+	}
+
+	/**
+	 * Returns the workspace without waiting, its contents are deleted on the background thread before it is handed out again.
+	 */
+	synchronized void release(File workspace) {
+		LOG.debug("release() " + workspace);
+		if (!active.remove(workspace)) return;
+		File[] files = workspace.listFiles();
+		if (files != null) {
+			for (File file : files) discard(file);
+		}
+		lastCleanup = cleaner.submit(() -> {
+			synchronized (this) {
+				if (idle.size() < MAXIDLE) {
+					idle.addLast(workspace);
+				} else {
+					deleteRecursively(workspace);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Deletes file or directory without waiting, it is renamed first so its name can be used again at once.
+	 */
+	void discard(File file) {
+		if (!file.exists()) return;
+		File renamed = new File(base.toFile(), TRASH + System.nanoTime() + "_" + trashCount.incrementAndGet());
+		cleanup(file.renameTo(renamed) ? renamed : file);
+	}
+
+	private synchronized void cleanup(File file) {
+		trash.add(file);
+		lastCleanup = cleaner.submit(() -> {
+			deleteRecursively(file);
+			synchronized (this) {
+				trash.remove(file);
+				notifyAll();
+			}
+		});
+	}
+
+	/**
+	 * Throws an exception if the workspaces use more than workspaceQuotaMB after the pending deletes are done.
+	 */
+	void checkQuota() throws Exception {
+		if (workspaceQuotaMB < 1) return;
+		long quota = workspaceQuotaMB * 1024L * 1024L;
+		long used = getBytesUsed();
+		if (used > quota) {
+			waitForCleanup();
+			used = getBytesUsed();
+		}
+		if (used > quota) {
+			throw new Exception(String.format("OpenVSP workspaces in %s use %d MB, the quota is %d MB", base, used / (1024 * 1024), workspaceQuotaMB));
+		}
+	}
+
+	/**
+	 * Waits for the background deletes submitted so far.
+	 */
+	void waitForCleanup() throws Exception {
+		Future<?> future;
+		synchronized (this) {
+			future = lastCleanup;
+		}
+		if (future != null) future.get();
+	}
+
+	private long getBytesUsed() {
+		Set<File> files = new HashSet<>();
+		synchronized (this) {
+			files.addAll(active);
+			files.addAll(trash);
+		}
+		long bytes = 0;
+		for (File file : files) bytes += getBytes(file);
+		return bytes;
+	}
+
+	private static long getBytes(File file) {
+		if (!file.isDirectory()) return file.length();
+		long bytes = 0;
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) bytes += getBytes(child);
+		}
+		return bytes;
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) deleteRecursively(child);
+		}
+		if (!file.delete() && file.exists()) LOG.warn("deleteRecursively() - could not delete " + file);
+	}
+}
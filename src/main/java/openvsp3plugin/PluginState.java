@@ -21,7 +21,9 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -245,6 +247,31 @@ public class PluginState {
 		bw.close();
 	}
 	
+	/**
+	 * Writes the desInputs with the values (by full name) instead of the design variable values,
+	 * so batch evaluations can write des files from other threads.
+	 */
+	public void writeDesFile(File file, List<DesignVariable> desInputs, Map<String, String> values) throws IOException {
+		try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+			bw.write(String.format("%d", desInputs.size()));
+			bw.newLine();
+			for (DesignVariable dv : desInputs) {
+				bw.write(dv.toDesString(values.get(dv.getFullName())));
+				bw.newLine();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the inputs in the order writeDesFile() writes them.
+	 */
+	public List<DesignVariable> getDesInputs(boolean sort) {
+		SortedList<DesignVariable> sortedDesignVariables;
+		if (sort) sortedDesignVariables = desFileSort(designVariables);
+		else sortedDesignVariables = designVariables.sorted();
+		return new ArrayList<>(sortedDesignVariables.filtered(dv -> !dv.isOutput()));
+	}
+	
 	private SortedList<DesignVariable> desFileSort(ObservableList<DesignVariable> list) {
 		return list.sorted((DesignVariable dv1, DesignVariable dv2) -> {
 			int value;
@@ -123,6 +123,17 @@ class SwingDialog extends JFrame {
 		controller.restoreUI(state, loadFile);
 	}
 	
+	void stopWatchingFile() {
+		LOG.trace("stopWatchingFile()");
+		if (controller != null) controller.stopWatchingFile();
+	}
+	
+	@Override
+	public void dispose() {
+		stopWatchingFile();
+		super.dispose();
+	}
+	
 	boolean checkIfLoadingFile() {
 		boolean value = controller.checkIfLoadingFile();
 		LOG.trace("checkIfLoadingFile(" + value + ")");
@@ -20,11 +20,16 @@ package openvsp3plugin;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import org.w3c.dom.Document;
@@ -36,9 +41,11 @@ import org.xml.sax.SAXException;
 
 /**
  * Utility class to parse XML files using xpath
+ * Compiled expressions are kept in a small LRU cache so an expression used again is not compiled again.
  */
 public class XPathUtil {
 
+	static final int CACHESIZE = 256;
 	private static Boolean ignoreNumberFormatErrors = false;
 
 	public static void setIgnoreNumberFormatErrors(Boolean value) {
@@ -47,6 +54,15 @@ public class XPathUtil {
 
 	private final Document doc;
 	private final XPath xp;
+	@SuppressWarnings("serial")
+	private final Map<String, XPathExpression> cache = new LinkedHashMap<String, XPathExpression>(CACHESIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+			return size() > CACHESIZE;
+		}
+	};
+	private long cacheHits = 0;
+	private long cacheMisses = 0;
 	
 	public XPathUtil(File input) throws ParserConfigurationException, SAXException, IOException {
 		this.doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(input);
@@ -60,11 +76,27 @@ public class XPathUtil {
 		this.doc = builder.parse(new InputSource(new StringReader(xml)));
 		this.xp = XPathFactory.newInstance().newXPath();
 	}
+	
+	public String getCacheStatistics() {
+		return String.format("XPath cache hits %d, misses %d, size %d", cacheHits, cacheMisses, cache.size());
+	}
+	
+	private XPathExpression compile(String expression) throws XPathExpressionException {
+		XPathExpression compiled = cache.get(expression);
+		if (compiled == null) {
+			cacheMisses++;
+			compiled = xp.compile(expression);
+			cache.put(expression, compiled);
+		} else {
+			cacheHits++;
+		}
+		return compiled;
+	}
 
 	public String getElement(String expression) {
 		String element = "";
 		try {
-			element = xp.evaluate(expression, doc);
+			element = compile(expression).evaluate(doc);
 		} catch (XPathExpressionException e) {
 			e.printStackTrace();
 		}
@@ -74,7 +106,7 @@ public class XPathUtil {
 	public Node getElementNode(String expression) {
 		Node n = null;
 		try {
-			n = (Node) xp.evaluate(expression, doc, XPathConstants.NODE);
+			n = (Node) compile(expression).evaluate(doc, XPathConstants.NODE);
 		} catch (XPathExpressionException e) {
 			e.printStackTrace();
 		}
@@ -84,7 +116,7 @@ public class XPathUtil {
 	public NodeList getElementNodes(String expression) {
 		NodeList n = null;
 		try {
-			n = (NodeList) xp.evaluate(expression, doc, XPathConstants.NODESET);
+			n = (NodeList) compile(expression).evaluate(doc, XPathConstants.NODESET);
 		} catch (XPathExpressionException e) {
 			e.printStackTrace();
 		}
@@ -92,12 +124,16 @@ public class XPathUtil {
 	}
 
 	public int getInteger(String expression) {
+		return parseInteger(getElement(expression));
+	}
+
+	public static int parseInteger(String element) {
 		int value = 0;
 		try {
-			value = Integer.parseInt(getElement(expression));
+			value = Integer.parseInt(element);
 		} catch (NumberFormatException e) {
 			if (ignoreNumberFormatErrors) {
-				System.err.println("***** getInteger:NumberFormatException parsing \"" + getElement(expression) + "\"");
+				System.err.println("***** getInteger:NumberFormatException parsing \"" + element + "\"");
 			} else {
 				throw e;
 			}
@@ -133,4 +169,49 @@ public class XPathUtil {
 		}
 		return value;
 	}
+
+	/**
+	 * Returns the first element matching the relative path ("A/B/C") in document order,
+	 * the same node getElementNode() returns but without searching from the document root.
+	 */
+	public static Node getChildElement(Node node, String path) {
+		if (node == null) return null;
+		return findChildElements(node, path, 0, null);
+	}
+
+	/**
+	 * Returns all the elements matching the relative path ("A/B/C") in document order.
+	 */
+	public static List<Node> getChildElements(Node node, String path) {
+		List<Node> nodes = new ArrayList<>();
+		if (node != null) findChildElements(node, path, 0, nodes);
+		return nodes;
+	}
+
+	/**
+	 * Returns the text content of the first element matching the relative path or "" like getElement().
+	 */
+	public static String getChildText(Node node, String path) {
+		Node child = getChildElement(node, path);
+		return (child == null) ? "" : child.getTextContent();
+	}
+
+	// walks path from start without splitting it, stops at the first match if nodes is null
+	private static Node findChildElements(Node node, String path, int start, List<Node> nodes) {
+		int end = path.indexOf('/', start);
+		if (end < 0) end = path.length();
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+			String name = child.getNodeName();
+			if ((name.length() != end - start) || !path.startsWith(name, start)) continue;
+			if (end == path.length()) {
+				if (nodes == null) return child;
+				nodes.add(child);
+			} else {
+				Node found = findChildElements(child, path, end + 1, nodes);
+				if (found != null) return found;
+			}
+		}
+		return null;
+	}
 }